@@ -26,6 +26,8 @@ package com.kryptel;
 
 import static com.kryptel.Capabilities.CAP_DEFAULT_CAPABILITIES;
 import static com.kryptel.Constants.DEFAULT_BUFFER_SIZE;
+import static com.kryptel.Constants.MAPPED_WINDOW_SIZE;
+import static com.kryptel.Constants.MIN_SIZE_TO_MAP;
 import static com.kryptel.Guids.IID_IMemoryBlockHash;
 import static com.kryptel.IProgressCallback.MIN_SIZE_TO_STEP;
 import static com.kryptel.IProgressCallback.NO_TOTAL_PROGRESS_BAR;
@@ -41,7 +43,13 @@ import static com.kryptel.key.KeyIdent.IDENT_RAW_BINARY_KEY;
 import static com.kryptel.key.KeyIdent.IDENT_YUBIKEY;
 import static com.kryptel.key.KeyIdent.IDENT_YUBIKEY_PASSWORD;
 
+import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.UUID;
 
 import com.kryptel.exceptions.UserAbortException;
@@ -173,4 +181,114 @@ public final class ApiHelpers {
 			if (bProgress) progressFunc.Callback(arg, progressMessage, PROGRESS_STEPS, NO_TOTAL_PROGRESS_BAR);	// Make sure progress bar is removed
 		}
 	}
+
+	
+	// Same as ComputeAreaHash, but maps the area window by window instead of reading it with RandomAccessFile.
+	// The hash functions still copy mapped data through a small internal array, so the saving is the file reads.
+	// Each window is released as soon as it has been hashed, so no more than one mapping is alive at a time and
+	// the file is not left locked (on Windows a mapped file can't be deleted or renamed until the mapping is gone).
+	// Small areas, files that can't be mapped, and JVMs that can't release mappings are handled by ComputeAreaHash.
+	public static byte[] ComputeMappedAreaHash(RandomAccessFile dataFile, long start, long size, IHashFunction hashFunc, Object arg, IProgressCallback progressFunc, Message.Code progressMessageCode) throws Exception {
+		if (size < MIN_SIZE_TO_MAP || !CanReleaseMappings()) return ComputeAreaHash(dataFile, start, size, hashFunc, arg, progressFunc, progressMessageCode);
+		
+		FileChannel channel = dataFile.getChannel();
+		MappedByteBuffer window;
+		try {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, MAPPED_WINDOW_SIZE));
+		}
+		catch (IOException | UnsupportedOperationException e) {
+			return ComputeAreaHash(dataFile, start, size, hashFunc, arg, progressFunc, progressMessageCode);
+		}
+		
+		String progressMessage = Message.Get(progressMessageCode);
+		long[] steps = new long [PROGRESS_STEPS + 1];
+		long areaEnd = start + size;
+		long curPos = 0;
+		int curStep = 0;
+		boolean bProgress = progressFunc != null;
+		
+		try {
+			if (bProgress) {
+				for (int i = 1; i < PROGRESS_STEPS; i++) steps[i] = (size * i) / PROGRESS_STEPS;
+				steps[PROGRESS_STEPS] = size;
+				if (!progressFunc.Callback(arg, progressMessage, 0, NO_TOTAL_PROGRESS_BAR)) throw new UserAbortException();
+			}
+	
+			hashFunc.Init();
+			
+			for (;;) {
+				if (!bProgress)
+					hashFunc.Hash(window);
+				else {
+					// Hash in buffer-sized slices to keep the progress bar moving
+					int windowEnd = window.limit();
+					while (window.hasRemaining()) {
+						int len = Math.min(window.remaining(), DEFAULT_BUFFER_SIZE);
+						window.limit(window.position() + len);
+						hashFunc.Hash(window);
+						window.limit(windowEnd);
+						
+						curPos += len;
+						int prevStep = curStep;
+						for ( ; curStep < PROGRESS_STEPS && curPos >= steps[curStep + 1]; curStep++);
+						if (curStep != prevStep) {
+							if (!progressFunc.Callback(arg, progressMessage, curStep, NO_TOTAL_PROGRESS_BAR)) throw new Exception(Message.Get(Message.Code.UserAbort));
+						}
+					}
+				}
+				
+				start += window.capacity();
+				ReleaseMapping(window);
+				window = null;
+				if (start >= areaEnd) break;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(areaEnd - start, MAPPED_WINDOW_SIZE));
+			}
+			
+			dataFile.seek(areaEnd);		// Leave the file pointer where ComputeAreaHash would
+			return hashFunc.Done();
+		}
+		finally {
+			if (window != null) ReleaseMapping(window);
+			if (bProgress) progressFunc.Callback(arg, progressMessage, PROGRESS_STEPS, NO_TOTAL_PROGRESS_BAR);	// Make sure progress bar is removed
+		}
+	}
+	
+	
+	//
+	// Mapped windows
+	//
+	// A MappedByteBuffer stays mapped until it is garbage collected, and there is no public API to unmap it.
+	// sun.misc.Unsafe.invokeCleaner (JDK 9 and later) releases it right away; the buffer and all its views
+	// must not be accessed after that. Callers should not map files if CanReleaseMappings returns false.
+	//
+	
+	public static boolean CanReleaseMappings() {
+		return invokeCleaner != null;
+	}
+	
+	public static void ReleaseMapping(MappedByteBuffer window) {
+		try {
+			invokeCleaner.invoke(theUnsafe, window);
+		}
+		catch (ReflectiveOperationException e) {
+			// The mapping will be released by the garbage collector
+		}
+	}
+	
+	private static Object theUnsafe;
+	private static Method invokeCleaner;
+	
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Method method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			theUnsafe = field.get(null);
+			invokeCleaner = method;
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;		// Not available, large areas are read instead of mapped
+		}
+	}
 }
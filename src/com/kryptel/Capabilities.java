@@ -26,12 +26,21 @@ package com.kryptel;
 
 public final class Capabilities {
 	static public final long CAP_NO_CAPABILITIES									= 0x0000000000000000L;
-	static public final long CAP_DEFAULT_CAPABILITIES							= 0xFFFFFFFFFFFFFFFFL;
+	static public final long CAP_DEFAULT_CAPABILITIES							= ~Capabilities.CAP_OPT_IN_CAPABILITIES;
 	static public final long CAP_INVALID_CAPABILITIES_MASK				= 0xFFFFFFFFFFFFFFFFL;
 
+	// Capabilities left out of CAP_DEFAULT_CAPABILITIES, callers must request them explicitly
+	static public final long CAP_OPT_IN_CAPABILITIES							= Capabilities.CAP_PARALLEL_CIPHER | Capabilities.CAP_KEY_SCHEDULE_CACHE;
+
 	// Generic capabilities
 	static public final long CAP_64_BIT_PROCESSING								= 0x0000000000000001L;
 	static public final long CAP_MULTI_THREAD_PROCESSING					= 0x0000000000000002L;
+	static public final long CAP_PARALLEL_CIPHER							= 0x0000000000000004L;		// Block ciphers may spread independent blocks over the shared thread pool (opt-in)
+	static public final long CAP_PLATFORM_CRYPTO							= 0x0000000000000008L;		// Components may delegate primitives to the JCA provider (e.g. AES intrinsics) (on by default)
+	static public final long CAP_KEY_SCHEDULE_CACHE							= 0x0000000000000010L;		// Expanded cipher keys may be kept in a process-wide cache (opt-in)
+	static public final long CAP_OPTIMIZED_CIPHERS							= 0x0000000000000020L;		// Alternative cipher implementations trading memory for speed may be used (on by default)
+	static public final long CAP_CALIBRATED_SELECTION						= 0x0000000000000040L;		// Loader may choose among implementations by a one-time benchmark on this JVM (on by default, no effect until Loader.Calibrate is called)
+	static public final long CAP_PARALLEL_COMPRESSION						= 0x0000000000000080L;		// Compressors may deflate independent chunks over the shared thread pool (on by default)
 	// Key manager capabilities
 	static public final long CAP_ADVANCED_PASSWORD_DIALOG					= 0x0000000000000100L;
 	static public final long CAP_BINARY_KEYS											= 0x0000000000000200L;
@@ -28,6 +28,8 @@ public final class Constants {
 	static public final byte DEFAULT_VALUE = 0;
 	static public final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 	static public final int HTTP_BUFFER_SIZE = 4 * 1024;
+	static public final int MAPPED_WINDOW_SIZE = 16 * 1024 * 1024;		// Large file areas are hashed through mappings of this size
+	static public final int MIN_SIZE_TO_MAP = 1024 * 1024;				// Smaller areas are faster to read than to map
 	
 	static public final int BINARY_KEY_SIZE = 512;
 	static public final int MAX_PASSWORD_LENGTH = (BINARY_KEY_SIZE / 2) - 1;	// UTF-16 zero-terminated string fitting in BINARY_KEY_SIZE
@@ -135,4 +137,10 @@ public final class Constants {
 	static public final byte CT_MAX_COMPRESSION							= 9;
 
 	static public final byte DEFAULT_COMPRESSION_LEVEL			= CT_AVERAGE_COMPRESSION;
+
+
+	// Zip compression schemes
+
+	static public final byte ZIP_SCHEME_DEFLATE							= 1;
+	static public final byte ZIP_SCHEME_STORED_PASSTHROUGH		= 2;		// CT_NO_COMPRESSION streams bypass zlib; not readable by older versions
 }
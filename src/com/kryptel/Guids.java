@@ -54,6 +54,7 @@ public final class Guids {
 	// Compressors
 
 	static public final UUID CID_COMPRESSOR_ZIP								= UUID.fromString("11056249-400A-4461-BD5E-FE06113A1012");
+	static public final UUID CID_COMPRESSOR_LZ4								= UUID.fromString("D24E9ADB-D74B-4D96-A12F-DA46EA517BAB");	// Not a Kryptel component; streams using it can be read by this library only
 	
 	// Hash functions
 
@@ -69,6 +70,10 @@ public final class Guids {
 
 	static public final UUID CID_HMAC													= UUID.fromString("11056249-400A-4461-BD5E-FE06113A10C1");
 	static public final UUID CID_CMAC													= UUID.fromString("11056249-400A-4461-BD5E-FE06113A10C2");
+
+	// Pseudo-random generators
+
+	static public final UUID CID_PSEUDO_RNG										= UUID.fromString("13B07A80-9C49-4C90-B21B-BCC1653D88EF");	// Not a Kryptel component
 	
 	// Key Manager
 
@@ -130,9 +135,12 @@ public final class Guids {
 	static public final UUID IID_IHashFunctionParams						= UUID.fromString("B0D928BC-73D4-4E50-B542-4E77701A5A89");
 	static public final UUID IID_IHashFunction									= UUID.fromString("9BB7469B-EE4B-47EE-A1EE-77096598CD6B");
 	static public final UUID IID_IMemoryBlockHash								= UUID.fromString("5BD59EBB-CB6C-4853-8161-EAC195226D1A");
+	static public final UUID IID_IHashMidstate									= UUID.fromString("A32A8AA5-53D3-4D16-A96D-60C66133B6F1");
 
 	static public final UUID IID_IMacSetup											= UUID.fromString("21100772-B18B-4B4D-979F-4BAD8B6C8C26");
 
+	static public final UUID IID_IPseudoRandom									= UUID.fromString("DEDE0B4E-5948-435B-AD39-3E3C1E5E9D38");
+
 	static public final UUID IID_IEncryptedStorage							= UUID.fromString("7F21394E-DD70-4024-BC4E-01DDD17137FC");
 	static public final UUID IID_IEncryptedStorageInquirer			= UUID.fromString("B3871B47-4E6C-458b-A080-E0A603C27E0A");
 
@@ -24,6 +24,9 @@
 package com.kryptel;
 
 
+import java.nio.ByteBuffer;
+
+
 //
 //Callback interface the caller should provide for ciphering and compressing
 //
@@ -31,5 +34,22 @@ package com.kryptel;
 public interface IDataSink {
 	void Init(Object arg) throws Exception;
 	void PutData(byte[] buf, int start, int size) throws Exception;
+
+	// Consumes the remaining bytes of buf. Sinks that only work with arrays get the backing array,
+	// or consecutive heap copies of a direct buffer.
+	default void PutData(ByteBuffer buf) throws Exception {
+		if (buf.hasArray()) {
+			PutData(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+			buf.position(buf.limit());
+		}
+		else {
+			byte[] chunk = new byte [Math.min(buf.remaining(), Constants.DEFAULT_BUFFER_SIZE)];
+			while (buf.hasRemaining()) {
+				int len = Math.min(buf.remaining(), chunk.length);
+				buf.get(chunk, 0, len);
+				PutData(chunk, 0, len);
+			}
+		}
+	}
 	void Done() throws Exception;
 };
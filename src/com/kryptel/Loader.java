@@ -24,10 +24,13 @@
 package com.kryptel;
 
 
+import static com.kryptel.Capabilities.CAP_CALIBRATED_SELECTION;
 import static com.kryptel.Capabilities.CAP_DEFAULT_CAPABILITIES;
+import static com.kryptel.Constants.TYPE_BLOCK_CIPHER;
 
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class Loader {
@@ -36,6 +39,11 @@ public class Loader {
 	public static IKryptelComponent CreateComponent(UUID cid, long capabilities) throws Exception {
 		IKryptelComponent comp;
 		
+		if ((capabilities & CAP_CALIBRATED_SELECTION) != 0) {
+			Long rejected = rejectedCapabilities.get(cid);
+			if (rejected != null) capabilities &= ~rejected;
+		}
+		
 		comp = com.kryptel.cipher.ComponentLoader.CreateComponent(cid, capabilities);
 		if (comp != null) return comp;
 		
@@ -48,6 +56,9 @@ public class Loader {
 		comp = com.kryptel.mac.ComponentLoader.CreateComponent(cid, capabilities);
 		if (comp != null) return comp;
 		
+		comp = com.kryptel.rng.ComponentLoader.CreateComponent(cid, capabilities);
+		if (comp != null) return comp;
+		
 		comp = com.kryptel.silver_key.ComponentLoader.CreateComponent(cid, capabilities);
 		if (comp != null) return comp;
 		
@@ -65,9 +76,30 @@ public class Loader {
 		com.kryptel.compressor.ComponentLoader.GetComponentList(uidList, mask);
 		com.kryptel.hash_function.ComponentLoader.GetComponentList(uidList, mask);
 		com.kryptel.mac.ComponentLoader.GetComponentList(uidList, mask);
+		com.kryptel.rng.ComponentLoader.GetComponentList(uidList, mask);
 		com.kryptel.silver_key.ComponentLoader.GetComponentList(uidList, mask);
 		com.kryptel.storage.ComponentLoader.GetComponentList(uidList, mask);
 		
 		return (UUID[])uidList.toArray(new UUID[uidList.size()]);
 	}
+
+
+	//
+	// Implementation selection
+	//
+	// Calibrate measures the capability bits that choose between implementations of a component
+	// and remembers the ones that turned out slower on this JVM and hardware. Components created afterwards
+	// with CAP_CALIBRATED_SELECTION have those bits cleared and report the resulting mask through IComponentCapabilities.
+	// Calibration takes about a second per alternative implementation, the results are kept for the process lifetime.
+	//
+
+	public static void Calibrate() throws Exception {
+		for (UUID cid: GetComponentList(TYPE_BLOCK_CIPHER)) Calibrate(cid);
+	}
+
+	public static void Calibrate(UUID cid) throws Exception {
+		rejectedCapabilities.put(cid, com.kryptel.cipher.ComponentLoader.Calibrate(cid));
+	}
+
+	private static final ConcurrentHashMap<UUID, Long> rejectedCapabilities = new ConcurrentHashMap<UUID, Long>();
 }
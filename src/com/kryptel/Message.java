@@ -28,7 +28,7 @@ public final class Message {
 	public enum Code {
 		// Common errors
 		UserAbort, WrongKey, CompNotFound, UnsupportedCap, InvalidArg, InvalidState,
-		KeyMustBeSet, NotBlockSizeMultiple, InvalidCipherStreamHeader, InvalidCipherStream,
+		KeyMustBeSet, NotBlockSizeMultiple, InvalidCipherStreamHeader, InvalidCipherStream, InvalidCompressedStream,
 		InvalidKeySize, InvalidBlockSize, InvalidRounds, MacBaseNotSet, InvalidMacBase,
 		EmptyPassword, UnsupportedKeyMaterial, InvalidKeyMaterial, InsufficientKeyRights,
 		KeyForged, InvalidKeyFile,
@@ -103,6 +103,7 @@ public final class Message {
 		MessageList[Code.NotBlockSizeMultiple.ordinal()] = "Data size is not a multiple of cipher block size.";
 		MessageList[Code.InvalidCipherStreamHeader.ordinal()] = "Corrupted cipher data stream (invalid header).";
 		MessageList[Code.InvalidCipherStream.ordinal()] = "Corrupted cipher data stream.";
+		MessageList[Code.InvalidCompressedStream.ordinal()] = "Corrupted or unsupported compressed data stream.";
 		MessageList[Code.InvalidKeySize.ordinal()] = "Invalid key size.";
 		MessageList[Code.InvalidBlockSize.ordinal()] = "Invalid block size.";
 		MessageList[Code.InvalidRounds.ordinal()] = "Invalid number of rounds.";
@@ -26,12 +26,14 @@ package com.kryptel.cipher;
 
 import static com.kryptel.Guids.CID_CIPHER_AES;
 import static com.kryptel.bslx.Conversions.FromBytes;
-import static com.kryptel.bslx.Conversions.ToBytes;
+import static com.kryptel.bslx.Conversions.GetAsInt;
+import static com.kryptel.bslx.Conversions.IntAsBytes;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 
-final class Aes extends BlockCipherBase {
+class Aes extends BlockCipherBase {
 	Aes(long capabilities) {
 		super(capabilities);
 
@@ -766,135 +768,18 @@ final class Aes extends BlockCipherBase {
 	    0xD7CADC31, 0xD9C1D138, 0xCBDCC623, 0xC5D7CB2A, 0xEFE6E815, 0xE1EDE51C, 0xF3F0F207, 0xFDFBFF0E,
 	    0xA792B479, 0xA999B970, 0xBB84AE6B, 0xB58FA362, 0x9FBE805D, 0x91B58D54, 0x83A89A4F, 0x8DA39746 } };
 
-  private int[] encrKey = new int[120];
-  private int[] decrKey = new int[120];
-
-  
-  private int fwd_var1(int[] x, int c) {
-    switch (c) {
-      case 3:
-        return (cipherBlockSize == 16) ? x[0] : x[4];
-
-      case 5:
-        return (cipherBlockSize == 32) ? x[6] : x[0];
-
-      case 7:
-        return x[0];
-
-      default:
-        return x[c + 1];
-    }
-  }
-
-  private int fwd_var2(int[] x, int c) {
-    switch (c) {
-      case 0:
-        return (cipherBlockSize == 32) ? x[3] : x[2];
-
-      case 1:
-        return (cipherBlockSize == 32) ? x[4] : x[3];
-
-      case 2:
-        return (cipherBlockSize == 16) ? x[0] : ((cipherBlockSize == 24) ? x[4] : x[5]);
-
-      case 3:
-        return (cipherBlockSize == 16) ? x[1] : ((cipherBlockSize == 24) ? x[5] : x[6]);
-
-      case 4:
-        return (cipherBlockSize == 32) ? x[7] : x[0];
-
-      case 5:
-        return (cipherBlockSize == 32) ? x[0] : x[1];
-
-      default:
-        return x[c - 5];
-    }
-  }
-
-  private int fwd_var3(int[] x, int c) {
-    switch (c) {
-      case 0:
-        return (cipherBlockSize == 32) ? x[4] : x[3];
-
-      case 1:
-        return (cipherBlockSize == 16) ? x[0] : ((cipherBlockSize == 24) ? x[4] : x[5]);
-
-      case 2:
-        return (cipherBlockSize == 16) ? x[1] : ((cipherBlockSize == 24) ? x[5] : x[6]);
-
-      case 3:
-        return (cipherBlockSize == 16) ? x[2] : ((cipherBlockSize == 24) ? x[0] : x[7]);
-
-      case 4:
-        return (cipherBlockSize == 32) ? x[0] : x[1];
-
-      case 5:
-        return (cipherBlockSize == 32) ? x[1] : x[2];
-
-      default:
-        return x[c - 4];
-    }
-  }
-
-  private int inv_var1(int[] x, int c) {
-    switch (c) {
-      case 0:
-        return (cipherBlockSize == 16) ? x[3] : ((cipherBlockSize == 24) ? x[5] : x[7]);
-
-      default:
-        return x[c - 1];
-    }
-  }
-
-  private int inv_var2(int[] x, int c) {
-    switch (c) {
-      case 0:
-        return (cipherBlockSize == 16) ? x[2] : ((cipherBlockSize == 24) ? x[4] : x[5]);
-
-      case 1:
-        return (cipherBlockSize == 16) ? x[3] : ((cipherBlockSize == 24) ? x[5] : x[6]);
-
-      case 2:
-        return (cipherBlockSize == 32) ? x[7] : x[0];
-
-      case 3:
-        return (cipherBlockSize == 32) ? x[0] : x[1];
-
-      case 4:
-        return (cipherBlockSize == 32) ? x[1] : x[2];
-
-      case 5:
-        return (cipherBlockSize == 32) ? x[2] : x[3];
-
-      default:
-        return x[c - 3];
-    }
-  }
-
-  private int inv_var3(int[] x, int c) {
-    switch (c) {
-      case 0:
-        return (cipherBlockSize == 16) ? x[1] : ((cipherBlockSize == 24) ? x[3] : x[4]);
-
-      case 1:
-        return (cipherBlockSize == 16) ? x[2] : ((cipherBlockSize == 24) ? x[4] : x[5]);
-
-      case 2:
-        return (cipherBlockSize == 16) ? x[3] : ((cipherBlockSize == 24) ? x[5] : x[6]);
+  // Tables are aliased per row so that the round functions do a single array lookup
 
-      case 3:
-        return (cipherBlockSize == 32) ? x[7] : x[0];
+  private static final int[] FT0 = ft_tab[0], FT1 = ft_tab[1], FT2 = ft_tab[2], FT3 = ft_tab[3];
+  private static final int[] IT0 = it_tab[0], IT1 = it_tab[1], IT2 = it_tab[2], IT3 = it_tab[3];
+  private static final int[] FL0 = fl_tab[0], FL1 = fl_tab[1], FL2 = fl_tab[2], FL3 = fl_tab[3];
+  private static final int[] IL0 = il_tab[0], IL1 = il_tab[1], IL2 = il_tab[2], IL3 = il_tab[3];
 
-      case 4:
-        return (cipherBlockSize == 32) ? x[0] : x[1];
-
-      case 5:
-        return (cipherBlockSize == 32) ? x[1] : x[2];
+  private int[] encrKey = new int[120];
+  private int[] decrKey = new int[120];
 
-      default:
-        return x[c - 4];
-    }
-  }
+  private int blockWords;			// Block size in 32-bit words, selects the round function variant
+  private volatile boolean decrKeyReady;		// Decryption key is expanded on first use, CTR mode never needs it
 
 
   //
@@ -948,10 +833,17 @@ final class Aes extends BlockCipherBase {
         break;
     }
 
-    // Decryption key
+    blockWords = bs4;
+    decrKeyReady = false;
+  }
 
-    kf = 0;
-    kt = bs4 * cipherRounds;
+  // Parallel workers may get here simultaneously
+  private synchronized void ExpandDecryptionKey() {
+    if (decrKeyReady) return;
+
+    int bs4 = blockWords;
+    int kf = 0;
+    int kt = bs4 * cipherRounds;
 
     System.arraycopy(encrKey, 0, decrKey, kt, cipherBlockSize / 4);
     kf += bs4;
@@ -986,105 +878,290 @@ final class Aes extends BlockCipherBase {
     }
 
     System.arraycopy(encrKey, kf, decrKey, kt, cipherBlockSize / 4);
+
+    decrKeyReady = true;
+  }
+
+  protected int[] SaveKeySchedule() {
+    return Arrays.copyOf(encrKey, cipherBlockSize / 4 * (cipherRounds + 1));
+  }
+
+  protected void LoadKeySchedule(int[] schedule) {
+    System.arraycopy(schedule, 0, encrKey, 0, schedule.length);
+    blockWords = cipherBlockSize / 4;
+    decrKeyReady = false;
   }
 
   protected void EncryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
-    int[] b0 = new int[8];
-    int[] b1 = new int[8];
-    int bs4 = cipherBlockSize / 4;
-    int kp = bs4;
+    switch (blockWords) {
+      case 4: Encrypt128(dst, to, src, from); break;
+      case 6: Encrypt192(dst, to, src, from); break;
+      case 8: Encrypt256(dst, to, src, from); break;
+    }
+  }
 
-    FromBytes(b0, 0, src, from, cipherBlockSize);
-    for (int i = 0; i < bs4; i++) b0[i] ^= encrKey[i];
+  protected void DecryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
+    if (!decrKeyReady) ExpandDecryptionKey();
+    switch (blockWords) {
+      case 4: Decrypt128(dst, to, src, from); break;
+      case 6: Decrypt192(dst, to, src, from); break;
+      case 8: Decrypt256(dst, to, src, from); break;
+    }
+  }
 
-    for (int i = 0; i < cipherRounds - 1; i++) {
-      switch (cipherBlockSize) {
-        case 32:
-          b1[7] = encrKey[kp + 7] ^ ft_tab[0][b0[7] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 7) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 7) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 7) >>> 24) & 0xFF];
-          b1[6] = encrKey[kp + 6] ^ ft_tab[0][b0[6] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 6) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 6) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 6) >>> 24) & 0xFF];
- 
-        case 24:
-          b1[5] = encrKey[kp + 5] ^ ft_tab[0][b0[5] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 5) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 5) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 5) >>> 24) & 0xFF];
-          b1[4] = encrKey[kp + 4] ^ ft_tab[0][b0[4] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 4) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 4) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 4) >>> 24) & 0xFF];
+  protected void EncryptBasicBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    switch (blockWords) {
+      case 4:
+        for (int i = 0; i < nBlocks; i++, to += 16, from += 16) Encrypt128(dst, to, src, from);
+        break;
+      case 6:
+        for (int i = 0; i < nBlocks; i++, to += 24, from += 24) Encrypt192(dst, to, src, from);
+        break;
+      case 8:
+        for (int i = 0; i < nBlocks; i++, to += 32, from += 32) Encrypt256(dst, to, src, from);
+        break;
+    }
+  }
 
-        case 16:
-          b1[3] = encrKey[kp + 3] ^ ft_tab[0][b0[3] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 3) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 3) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 3) >>> 24) & 0xFF];
-          b1[2] = encrKey[kp + 2] ^ ft_tab[0][b0[2] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 2) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 2) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 2) >>> 24) & 0xFF];
-          b1[1] = encrKey[kp + 1] ^ ft_tab[0][b0[1] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 1) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 1) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 1) >>> 24) & 0xFF];
-          b1[0] = encrKey[kp + 0] ^ ft_tab[0][b0[0] & 0xFF] ^ ft_tab[1][(fwd_var1(b0, 0) >>> 8) & 0xFF] ^ ft_tab[2][(fwd_var2(b0, 0) >>> 16) & 0xFF] ^ ft_tab[3][(fwd_var3(b0, 0) >>> 24) & 0xFF];
-          break;
-      }
-      System.arraycopy(b1, 0, b0, 0, cipherBlockSize / 4);
-      kp += bs4;
+  protected void DecryptBasicBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    if (!decrKeyReady) ExpandDecryptionKey();
+    switch (blockWords) {
+      case 4:
+        for (int i = 0; i < nBlocks; i++, to += 16, from += 16) Decrypt128(dst, to, src, from);
+        break;
+      case 6:
+        for (int i = 0; i < nBlocks; i++, to += 24, from += 24) Decrypt192(dst, to, src, from);
+        break;
+      case 8:
+        for (int i = 0; i < nBlocks; i++, to += 32, from += 32) Decrypt256(dst, to, src, from);
+        break;
     }
+  }
 
-    switch (cipherBlockSize) {
-      case 32:
-        b0[7] = encrKey[kp + 7] ^ fl_tab[0][b1[7] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 7) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 7) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 7) >>> 24) & 0xFF];
-        b0[6] = encrKey[kp + 6] ^ fl_tab[0][b1[6] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 6) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 6) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 6) >>> 24) & 0xFF];
 
-      case 24:
-        b0[5] = encrKey[kp + 5] ^ fl_tab[0][b1[5] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 5) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 5) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 5) >>> 24) & 0xFF];
-        b0[4] = encrKey[kp + 4] ^ fl_tab[0][b1[4] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 4) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 4) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 4) >>> 24) & 0xFF];
+  //
+  // Round functions specialized for 128-, 192-, and 256-bit blocks
+  //
 
-      case 16:
-        b0[3] = encrKey[kp + 3] ^ fl_tab[0][b1[3] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 3) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 3) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 3) >>> 24) & 0xFF];
-        b0[2] = encrKey[kp + 2] ^ fl_tab[0][b1[2] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 2) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 2) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 2) >>> 24) & 0xFF];
-        b0[1] = encrKey[kp + 1] ^ fl_tab[0][b1[1] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 1) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 1) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 1) >>> 24) & 0xFF];
-        b0[0] = encrKey[kp + 0] ^ fl_tab[0][b1[0] & 0xFF] ^ fl_tab[1][(fwd_var1(b1, 0) >>> 8) & 0xFF] ^ fl_tab[2][(fwd_var2(b1, 0) >>> 16) & 0xFF] ^ fl_tab[3][(fwd_var3(b1, 0) >>> 24) & 0xFF];
-        break;
+  private void Encrypt128(byte[] dst, int to, byte[] src, int from) {
+    final int[] k = encrKey;
+    int s0 = GetAsInt(src, from) ^ k[0];
+    int s1 = GetAsInt(src, from + 4) ^ k[1];
+    int s2 = GetAsInt(src, from + 8) ^ k[2];
+    int s3 = GetAsInt(src, from + 12) ^ k[3];
+    int t0, t1, t2, t3;
+    int kp = 4;
+
+    for (int r = cipherRounds - 1; r > 0; r--) {
+      t0 = k[kp] ^ FT0[s0 & 0xFF] ^ FT1[(s1 >>> 8) & 0xFF] ^ FT2[(s2 >>> 16) & 0xFF] ^ FT3[s3 >>> 24];
+      t1 = k[kp + 1] ^ FT0[s1 & 0xFF] ^ FT1[(s2 >>> 8) & 0xFF] ^ FT2[(s3 >>> 16) & 0xFF] ^ FT3[s0 >>> 24];
+      t2 = k[kp + 2] ^ FT0[s2 & 0xFF] ^ FT1[(s3 >>> 8) & 0xFF] ^ FT2[(s0 >>> 16) & 0xFF] ^ FT3[s1 >>> 24];
+      t3 = k[kp + 3] ^ FT0[s3 & 0xFF] ^ FT1[(s0 >>> 8) & 0xFF] ^ FT2[(s1 >>> 16) & 0xFF] ^ FT3[s2 >>> 24];
+      s0 = t0; s1 = t1; s2 = t2; s3 = t3;
+      kp += 4;
     }
 
-    ToBytes(dst, to, b0, 0, cipherBlockSize);
+    t0 = k[kp] ^ FL0[s0 & 0xFF] ^ FL1[(s1 >>> 8) & 0xFF] ^ FL2[(s2 >>> 16) & 0xFF] ^ FL3[s3 >>> 24];
+    t1 = k[kp + 1] ^ FL0[s1 & 0xFF] ^ FL1[(s2 >>> 8) & 0xFF] ^ FL2[(s3 >>> 16) & 0xFF] ^ FL3[s0 >>> 24];
+    t2 = k[kp + 2] ^ FL0[s2 & 0xFF] ^ FL1[(s3 >>> 8) & 0xFF] ^ FL2[(s0 >>> 16) & 0xFF] ^ FL3[s1 >>> 24];
+    t3 = k[kp + 3] ^ FL0[s3 & 0xFF] ^ FL1[(s0 >>> 8) & 0xFF] ^ FL2[(s1 >>> 16) & 0xFF] ^ FL3[s2 >>> 24];
+
+    IntAsBytes(t0, dst, to);
+    IntAsBytes(t1, dst, to + 4);
+    IntAsBytes(t2, dst, to + 8);
+    IntAsBytes(t3, dst, to + 12);
   }
 
-  protected void DecryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
-    int[] b0 = new int[8];
-    int[] b1 = new int[8];
-    int bs4 = cipherBlockSize / 4;
-    int kp = bs4;
+  private void Decrypt128(byte[] dst, int to, byte[] src, int from) {
+    final int[] k = decrKey;
+    int s0 = GetAsInt(src, from) ^ k[0];
+    int s1 = GetAsInt(src, from + 4) ^ k[1];
+    int s2 = GetAsInt(src, from + 8) ^ k[2];
+    int s3 = GetAsInt(src, from + 12) ^ k[3];
+    int t0, t1, t2, t3;
+    int kp = 4;
+
+    for (int r = cipherRounds - 1; r > 0; r--) {
+      t0 = k[kp] ^ IT0[s0 & 0xFF] ^ IT1[(s3 >>> 8) & 0xFF] ^ IT2[(s2 >>> 16) & 0xFF] ^ IT3[s1 >>> 24];
+      t1 = k[kp + 1] ^ IT0[s1 & 0xFF] ^ IT1[(s0 >>> 8) & 0xFF] ^ IT2[(s3 >>> 16) & 0xFF] ^ IT3[s2 >>> 24];
+      t2 = k[kp + 2] ^ IT0[s2 & 0xFF] ^ IT1[(s1 >>> 8) & 0xFF] ^ IT2[(s0 >>> 16) & 0xFF] ^ IT3[s3 >>> 24];
+      t3 = k[kp + 3] ^ IT0[s3 & 0xFF] ^ IT1[(s2 >>> 8) & 0xFF] ^ IT2[(s1 >>> 16) & 0xFF] ^ IT3[s0 >>> 24];
+      s0 = t0; s1 = t1; s2 = t2; s3 = t3;
+      kp += 4;
+    }
 
-    FromBytes(b0, 0, src, from, cipherBlockSize);
-    for (int i = 0; i < bs4; i++) b0[i] ^= decrKey[i];
+    t0 = k[kp] ^ IL0[s0 & 0xFF] ^ IL1[(s3 >>> 8) & 0xFF] ^ IL2[(s2 >>> 16) & 0xFF] ^ IL3[s1 >>> 24];
+    t1 = k[kp + 1] ^ IL0[s1 & 0xFF] ^ IL1[(s0 >>> 8) & 0xFF] ^ IL2[(s3 >>> 16) & 0xFF] ^ IL3[s2 >>> 24];
+    t2 = k[kp + 2] ^ IL0[s2 & 0xFF] ^ IL1[(s1 >>> 8) & 0xFF] ^ IL2[(s0 >>> 16) & 0xFF] ^ IL3[s3 >>> 24];
+    t3 = k[kp + 3] ^ IL0[s3 & 0xFF] ^ IL1[(s2 >>> 8) & 0xFF] ^ IL2[(s1 >>> 16) & 0xFF] ^ IL3[s0 >>> 24];
 
-    for (int i = 0; i < cipherRounds - 1; i++) {
-      switch (cipherBlockSize) {
-        case 32:
-          b1[7] = decrKey[kp + 7] ^ it_tab[0][b0[7] & 0xFF] ^ it_tab[1][(inv_var1(b0, 7) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 7) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 7) >>> 24) & 0xFF];
-          b1[6] = decrKey[kp + 6] ^ it_tab[0][b0[6] & 0xFF] ^ it_tab[1][(inv_var1(b0, 6) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 6) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 6) >>> 24) & 0xFF];
+    IntAsBytes(t0, dst, to);
+    IntAsBytes(t1, dst, to + 4);
+    IntAsBytes(t2, dst, to + 8);
+    IntAsBytes(t3, dst, to + 12);
+  }
 
-        case 24:
-          b1[5] = decrKey[kp + 5] ^ it_tab[0][b0[5] & 0xFF] ^ it_tab[1][(inv_var1(b0, 5) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 5) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 5) >>> 24) & 0xFF];
-          b1[4] = decrKey[kp + 4] ^ it_tab[0][b0[4] & 0xFF] ^ it_tab[1][(inv_var1(b0, 4) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 4) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 4) >>> 24) & 0xFF];
+  private void Encrypt192(byte[] dst, int to, byte[] src, int from) {
+    final int[] k = encrKey;
+    int s0 = GetAsInt(src, from) ^ k[0];
+    int s1 = GetAsInt(src, from + 4) ^ k[1];
+    int s2 = GetAsInt(src, from + 8) ^ k[2];
+    int s3 = GetAsInt(src, from + 12) ^ k[3];
+    int s4 = GetAsInt(src, from + 16) ^ k[4];
+    int s5 = GetAsInt(src, from + 20) ^ k[5];
+    int t0, t1, t2, t3, t4, t5;
+    int kp = 6;
+
+    for (int r = cipherRounds - 1; r > 0; r--) {
+      t0 = k[kp] ^ FT0[s0 & 0xFF] ^ FT1[(s1 >>> 8) & 0xFF] ^ FT2[(s2 >>> 16) & 0xFF] ^ FT3[s3 >>> 24];
+      t1 = k[kp + 1] ^ FT0[s1 & 0xFF] ^ FT1[(s2 >>> 8) & 0xFF] ^ FT2[(s3 >>> 16) & 0xFF] ^ FT3[s4 >>> 24];
+      t2 = k[kp + 2] ^ FT0[s2 & 0xFF] ^ FT1[(s3 >>> 8) & 0xFF] ^ FT2[(s4 >>> 16) & 0xFF] ^ FT3[s5 >>> 24];
+      t3 = k[kp + 3] ^ FT0[s3 & 0xFF] ^ FT1[(s4 >>> 8) & 0xFF] ^ FT2[(s5 >>> 16) & 0xFF] ^ FT3[s0 >>> 24];
+      t4 = k[kp + 4] ^ FT0[s4 & 0xFF] ^ FT1[(s5 >>> 8) & 0xFF] ^ FT2[(s0 >>> 16) & 0xFF] ^ FT3[s1 >>> 24];
+      t5 = k[kp + 5] ^ FT0[s5 & 0xFF] ^ FT1[(s0 >>> 8) & 0xFF] ^ FT2[(s1 >>> 16) & 0xFF] ^ FT3[s2 >>> 24];
+      s0 = t0; s1 = t1; s2 = t2; s3 = t3; s4 = t4; s5 = t5;
+      kp += 6;
+    }
 
-        case 16:
-          b1[3] = decrKey[kp + 3] ^ it_tab[0][b0[3] & 0xFF] ^ it_tab[1][(inv_var1(b0, 3) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 3) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 3) >>> 24) & 0xFF];
-          b1[2] = decrKey[kp + 2] ^ it_tab[0][b0[2] & 0xFF] ^ it_tab[1][(inv_var1(b0, 2) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 2) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 2) >>> 24) & 0xFF];
-          b1[1] = decrKey[kp + 1] ^ it_tab[0][b0[1] & 0xFF] ^ it_tab[1][(inv_var1(b0, 1) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 1) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 1) >>> 24) & 0xFF];
-          b1[0] = decrKey[kp + 0] ^ it_tab[0][b0[0] & 0xFF] ^ it_tab[1][(inv_var1(b0, 0) >>> 8) & 0xFF] ^ it_tab[2][(inv_var2(b0, 0) >>> 16) & 0xFF] ^ it_tab[3][(inv_var3(b0, 0) >>> 24) & 0xFF];
-          break;
-      }
-      System.arraycopy(b1, 0, b0, 0, cipherBlockSize / 4);
-      kp += bs4;
+    t0 = k[kp] ^ FL0[s0 & 0xFF] ^ FL1[(s1 >>> 8) & 0xFF] ^ FL2[(s2 >>> 16) & 0xFF] ^ FL3[s3 >>> 24];
+    t1 = k[kp + 1] ^ FL0[s1 & 0xFF] ^ FL1[(s2 >>> 8) & 0xFF] ^ FL2[(s3 >>> 16) & 0xFF] ^ FL3[s4 >>> 24];
+    t2 = k[kp + 2] ^ FL0[s2 & 0xFF] ^ FL1[(s3 >>> 8) & 0xFF] ^ FL2[(s4 >>> 16) & 0xFF] ^ FL3[s5 >>> 24];
+    t3 = k[kp + 3] ^ FL0[s3 & 0xFF] ^ FL1[(s4 >>> 8) & 0xFF] ^ FL2[(s5 >>> 16) & 0xFF] ^ FL3[s0 >>> 24];
+    t4 = k[kp + 4] ^ FL0[s4 & 0xFF] ^ FL1[(s5 >>> 8) & 0xFF] ^ FL2[(s0 >>> 16) & 0xFF] ^ FL3[s1 >>> 24];
+    t5 = k[kp + 5] ^ FL0[s5 & 0xFF] ^ FL1[(s0 >>> 8) & 0xFF] ^ FL2[(s1 >>> 16) & 0xFF] ^ FL3[s2 >>> 24];
+
+    IntAsBytes(t0, dst, to);
+    IntAsBytes(t1, dst, to + 4);
+    IntAsBytes(t2, dst, to + 8);
+    IntAsBytes(t3, dst, to + 12);
+    IntAsBytes(t4, dst, to + 16);
+    IntAsBytes(t5, dst, to + 20);
+  }
+
+  private void Decrypt192(byte[] dst, int to, byte[] src, int from) {
+    final int[] k = decrKey;
+    int s0 = GetAsInt(src, from) ^ k[0];
+    int s1 = GetAsInt(src, from + 4) ^ k[1];
+    int s2 = GetAsInt(src, from + 8) ^ k[2];
+    int s3 = GetAsInt(src, from + 12) ^ k[3];
+    int s4 = GetAsInt(src, from + 16) ^ k[4];
+    int s5 = GetAsInt(src, from + 20) ^ k[5];
+    int t0, t1, t2, t3, t4, t5;
+    int kp = 6;
+
+    for (int r = cipherRounds - 1; r > 0; r--) {
+      t0 = k[kp] ^ IT0[s0 & 0xFF] ^ IT1[(s5 >>> 8) & 0xFF] ^ IT2[(s4 >>> 16) & 0xFF] ^ IT3[s3 >>> 24];
+      t1 = k[kp + 1] ^ IT0[s1 & 0xFF] ^ IT1[(s0 >>> 8) & 0xFF] ^ IT2[(s5 >>> 16) & 0xFF] ^ IT3[s4 >>> 24];
+      t2 = k[kp + 2] ^ IT0[s2 & 0xFF] ^ IT1[(s1 >>> 8) & 0xFF] ^ IT2[(s0 >>> 16) & 0xFF] ^ IT3[s5 >>> 24];
+      t3 = k[kp + 3] ^ IT0[s3 & 0xFF] ^ IT1[(s2 >>> 8) & 0xFF] ^ IT2[(s1 >>> 16) & 0xFF] ^ IT3[s0 >>> 24];
+      t4 = k[kp + 4] ^ IT0[s4 & 0xFF] ^ IT1[(s3 >>> 8) & 0xFF] ^ IT2[(s2 >>> 16) & 0xFF] ^ IT3[s1 >>> 24];
+      t5 = k[kp + 5] ^ IT0[s5 & 0xFF] ^ IT1[(s4 >>> 8) & 0xFF] ^ IT2[(s3 >>> 16) & 0xFF] ^ IT3[s2 >>> 24];
+      s0 = t0; s1 = t1; s2 = t2; s3 = t3; s4 = t4; s5 = t5;
+      kp += 6;
     }
 
-    switch (cipherBlockSize) {
-      case 32:
-        b0[7] = decrKey[kp + 7] ^ il_tab[0][b1[7] & 0xFF] ^ il_tab[1][(inv_var1(b1, 7) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 7) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 7) >>> 24) & 0xFF];
-        b0[6] = decrKey[kp + 6] ^ il_tab[0][b1[6] & 0xFF] ^ il_tab[1][(inv_var1(b1, 6) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 6) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 6) >>> 24) & 0xFF];
+    t0 = k[kp] ^ IL0[s0 & 0xFF] ^ IL1[(s5 >>> 8) & 0xFF] ^ IL2[(s4 >>> 16) & 0xFF] ^ IL3[s3 >>> 24];
+    t1 = k[kp + 1] ^ IL0[s1 & 0xFF] ^ IL1[(s0 >>> 8) & 0xFF] ^ IL2[(s5 >>> 16) & 0xFF] ^ IL3[s4 >>> 24];
+    t2 = k[kp + 2] ^ IL0[s2 & 0xFF] ^ IL1[(s1 >>> 8) & 0xFF] ^ IL2[(s0 >>> 16) & 0xFF] ^ IL3[s5 >>> 24];
+    t3 = k[kp + 3] ^ IL0[s3 & 0xFF] ^ IL1[(s2 >>> 8) & 0xFF] ^ IL2[(s1 >>> 16) & 0xFF] ^ IL3[s0 >>> 24];
+    t4 = k[kp + 4] ^ IL0[s4 & 0xFF] ^ IL1[(s3 >>> 8) & 0xFF] ^ IL2[(s2 >>> 16) & 0xFF] ^ IL3[s1 >>> 24];
+    t5 = k[kp + 5] ^ IL0[s5 & 0xFF] ^ IL1[(s4 >>> 8) & 0xFF] ^ IL2[(s3 >>> 16) & 0xFF] ^ IL3[s2 >>> 24];
+
+    IntAsBytes(t0, dst, to);
+    IntAsBytes(t1, dst, to + 4);
+    IntAsBytes(t2, dst, to + 8);
+    IntAsBytes(t3, dst, to + 12);
+    IntAsBytes(t4, dst, to + 16);
+    IntAsBytes(t5, dst, to + 20);
+  }
 
-      case 24:
-        b0[5] = decrKey[kp + 5] ^ il_tab[0][b1[5] & 0xFF] ^ il_tab[1][(inv_var1(b1, 5) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 5) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 5) >>> 24) & 0xFF];
-        b0[4] = decrKey[kp + 4] ^ il_tab[0][b1[4] & 0xFF] ^ il_tab[1][(inv_var1(b1, 4) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 4) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 4) >>> 24) & 0xFF];
+  private void Encrypt256(byte[] dst, int to, byte[] src, int from) {
+    final int[] k = encrKey;
+    int s0 = GetAsInt(src, from) ^ k[0];
+    int s1 = GetAsInt(src, from + 4) ^ k[1];
+    int s2 = GetAsInt(src, from + 8) ^ k[2];
+    int s3 = GetAsInt(src, from + 12) ^ k[3];
+    int s4 = GetAsInt(src, from + 16) ^ k[4];
+    int s5 = GetAsInt(src, from + 20) ^ k[5];
+    int s6 = GetAsInt(src, from + 24) ^ k[6];
+    int s7 = GetAsInt(src, from + 28) ^ k[7];
+    int t0, t1, t2, t3, t4, t5, t6, t7;
+    int kp = 8;
+
+    for (int r = cipherRounds - 1; r > 0; r--) {
+      t0 = k[kp] ^ FT0[s0 & 0xFF] ^ FT1[(s1 >>> 8) & 0xFF] ^ FT2[(s3 >>> 16) & 0xFF] ^ FT3[s4 >>> 24];
+      t1 = k[kp + 1] ^ FT0[s1 & 0xFF] ^ FT1[(s2 >>> 8) & 0xFF] ^ FT2[(s4 >>> 16) & 0xFF] ^ FT3[s5 >>> 24];
+      t2 = k[kp + 2] ^ FT0[s2 & 0xFF] ^ FT1[(s3 >>> 8) & 0xFF] ^ FT2[(s5 >>> 16) & 0xFF] ^ FT3[s6 >>> 24];
+      t3 = k[kp + 3] ^ FT0[s3 & 0xFF] ^ FT1[(s4 >>> 8) & 0xFF] ^ FT2[(s6 >>> 16) & 0xFF] ^ FT3[s7 >>> 24];
+      t4 = k[kp + 4] ^ FT0[s4 & 0xFF] ^ FT1[(s5 >>> 8) & 0xFF] ^ FT2[(s7 >>> 16) & 0xFF] ^ FT3[s0 >>> 24];
+      t5 = k[kp + 5] ^ FT0[s5 & 0xFF] ^ FT1[(s6 >>> 8) & 0xFF] ^ FT2[(s0 >>> 16) & 0xFF] ^ FT3[s1 >>> 24];
+      t6 = k[kp + 6] ^ FT0[s6 & 0xFF] ^ FT1[(s7 >>> 8) & 0xFF] ^ FT2[(s1 >>> 16) & 0xFF] ^ FT3[s2 >>> 24];
+      t7 = k[kp + 7] ^ FT0[s7 & 0xFF] ^ FT1[(s0 >>> 8) & 0xFF] ^ FT2[(s2 >>> 16) & 0xFF] ^ FT3[s3 >>> 24];
+      s0 = t0; s1 = t1; s2 = t2; s3 = t3; s4 = t4; s5 = t5; s6 = t6; s7 = t7;
+      kp += 8;
+    }
 
-      case 16:
-        b0[3] = decrKey[kp + 3] ^ il_tab[0][b1[3] & 0xFF] ^ il_tab[1][(inv_var1(b1, 3) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 3) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 3) >>> 24) & 0xFF];
-        b0[2] = decrKey[kp + 2] ^ il_tab[0][b1[2] & 0xFF] ^ il_tab[1][(inv_var1(b1, 2) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 2) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 2) >>> 24) & 0xFF];
-        b0[1] = decrKey[kp + 1] ^ il_tab[0][b1[1] & 0xFF] ^ il_tab[1][(inv_var1(b1, 1) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 1) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 1) >>> 24) & 0xFF];
-        b0[0] = decrKey[kp + 0] ^ il_tab[0][b1[0] & 0xFF] ^ il_tab[1][(inv_var1(b1, 0) >>> 8) & 0xFF] ^ il_tab[2][(inv_var2(b1, 0) >>> 16) & 0xFF] ^ il_tab[3][(inv_var3(b1, 0) >>> 24) & 0xFF];
-        break;
+    t0 = k[kp] ^ FL0[s0 & 0xFF] ^ FL1[(s1 >>> 8) & 0xFF] ^ FL2[(s3 >>> 16) & 0xFF] ^ FL3[s4 >>> 24];
+    t1 = k[kp + 1] ^ FL0[s1 & 0xFF] ^ FL1[(s2 >>> 8) & 0xFF] ^ FL2[(s4 >>> 16) & 0xFF] ^ FL3[s5 >>> 24];
+    t2 = k[kp + 2] ^ FL0[s2 & 0xFF] ^ FL1[(s3 >>> 8) & 0xFF] ^ FL2[(s5 >>> 16) & 0xFF] ^ FL3[s6 >>> 24];
+    t3 = k[kp + 3] ^ FL0[s3 & 0xFF] ^ FL1[(s4 >>> 8) & 0xFF] ^ FL2[(s6 >>> 16) & 0xFF] ^ FL3[s7 >>> 24];
+    t4 = k[kp + 4] ^ FL0[s4 & 0xFF] ^ FL1[(s5 >>> 8) & 0xFF] ^ FL2[(s7 >>> 16) & 0xFF] ^ FL3[s0 >>> 24];
+    t5 = k[kp + 5] ^ FL0[s5 & 0xFF] ^ FL1[(s6 >>> 8) & 0xFF] ^ FL2[(s0 >>> 16) & 0xFF] ^ FL3[s1 >>> 24];
+    t6 = k[kp + 6] ^ FL0[s6 & 0xFF] ^ FL1[(s7 >>> 8) & 0xFF] ^ FL2[(s1 >>> 16) & 0xFF] ^ FL3[s2 >>> 24];
+    t7 = k[kp + 7] ^ FL0[s7 & 0xFF] ^ FL1[(s0 >>> 8) & 0xFF] ^ FL2[(s2 >>> 16) & 0xFF] ^ FL3[s3 >>> 24];
+
+    IntAsBytes(t0, dst, to);
+    IntAsBytes(t1, dst, to + 4);
+    IntAsBytes(t2, dst, to + 8);
+    IntAsBytes(t3, dst, to + 12);
+    IntAsBytes(t4, dst, to + 16);
+    IntAsBytes(t5, dst, to + 20);
+    IntAsBytes(t6, dst, to + 24);
+    IntAsBytes(t7, dst, to + 28);
+  }
+
+  private void Decrypt256(byte[] dst, int to, byte[] src, int from) {
+    final int[] k = decrKey;
+    int s0 = GetAsInt(src, from) ^ k[0];
+    int s1 = GetAsInt(src, from + 4) ^ k[1];
+    int s2 = GetAsInt(src, from + 8) ^ k[2];
+    int s3 = GetAsInt(src, from + 12) ^ k[3];
+    int s4 = GetAsInt(src, from + 16) ^ k[4];
+    int s5 = GetAsInt(src, from + 20) ^ k[5];
+    int s6 = GetAsInt(src, from + 24) ^ k[6];
+    int s7 = GetAsInt(src, from + 28) ^ k[7];
+    int t0, t1, t2, t3, t4, t5, t6, t7;
+    int kp = 8;
+
+    for (int r = cipherRounds - 1; r > 0; r--) {
+      t0 = k[kp] ^ IT0[s0 & 0xFF] ^ IT1[(s7 >>> 8) & 0xFF] ^ IT2[(s5 >>> 16) & 0xFF] ^ IT3[s4 >>> 24];
+      t1 = k[kp + 1] ^ IT0[s1 & 0xFF] ^ IT1[(s0 >>> 8) & 0xFF] ^ IT2[(s6 >>> 16) & 0xFF] ^ IT3[s5 >>> 24];
+      t2 = k[kp + 2] ^ IT0[s2 & 0xFF] ^ IT1[(s1 >>> 8) & 0xFF] ^ IT2[(s7 >>> 16) & 0xFF] ^ IT3[s6 >>> 24];
+      t3 = k[kp + 3] ^ IT0[s3 & 0xFF] ^ IT1[(s2 >>> 8) & 0xFF] ^ IT2[(s0 >>> 16) & 0xFF] ^ IT3[s7 >>> 24];
+      t4 = k[kp + 4] ^ IT0[s4 & 0xFF] ^ IT1[(s3 >>> 8) & 0xFF] ^ IT2[(s1 >>> 16) & 0xFF] ^ IT3[s0 >>> 24];
+      t5 = k[kp + 5] ^ IT0[s5 & 0xFF] ^ IT1[(s4 >>> 8) & 0xFF] ^ IT2[(s2 >>> 16) & 0xFF] ^ IT3[s1 >>> 24];
+      t6 = k[kp + 6] ^ IT0[s6 & 0xFF] ^ IT1[(s5 >>> 8) & 0xFF] ^ IT2[(s3 >>> 16) & 0xFF] ^ IT3[s2 >>> 24];
+      t7 = k[kp + 7] ^ IT0[s7 & 0xFF] ^ IT1[(s6 >>> 8) & 0xFF] ^ IT2[(s4 >>> 16) & 0xFF] ^ IT3[s3 >>> 24];
+      s0 = t0; s1 = t1; s2 = t2; s3 = t3; s4 = t4; s5 = t5; s6 = t6; s7 = t7;
+      kp += 8;
     }
 
-    ToBytes(dst, to, b0, 0, cipherBlockSize);
+    t0 = k[kp] ^ IL0[s0 & 0xFF] ^ IL1[(s7 >>> 8) & 0xFF] ^ IL2[(s5 >>> 16) & 0xFF] ^ IL3[s4 >>> 24];
+    t1 = k[kp + 1] ^ IL0[s1 & 0xFF] ^ IL1[(s0 >>> 8) & 0xFF] ^ IL2[(s6 >>> 16) & 0xFF] ^ IL3[s5 >>> 24];
+    t2 = k[kp + 2] ^ IL0[s2 & 0xFF] ^ IL1[(s1 >>> 8) & 0xFF] ^ IL2[(s7 >>> 16) & 0xFF] ^ IL3[s6 >>> 24];
+    t3 = k[kp + 3] ^ IL0[s3 & 0xFF] ^ IL1[(s2 >>> 8) & 0xFF] ^ IL2[(s0 >>> 16) & 0xFF] ^ IL3[s7 >>> 24];
+    t4 = k[kp + 4] ^ IL0[s4 & 0xFF] ^ IL1[(s3 >>> 8) & 0xFF] ^ IL2[(s1 >>> 16) & 0xFF] ^ IL3[s0 >>> 24];
+    t5 = k[kp + 5] ^ IL0[s5 & 0xFF] ^ IL1[(s4 >>> 8) & 0xFF] ^ IL2[(s2 >>> 16) & 0xFF] ^ IL3[s1 >>> 24];
+    t6 = k[kp + 6] ^ IL0[s6 & 0xFF] ^ IL1[(s5 >>> 8) & 0xFF] ^ IL2[(s3 >>> 16) & 0xFF] ^ IL3[s2 >>> 24];
+    t7 = k[kp + 7] ^ IL0[s7 & 0xFF] ^ IL1[(s6 >>> 8) & 0xFF] ^ IL2[(s4 >>> 16) & 0xFF] ^ IL3[s3 >>> 24];
+
+    IntAsBytes(t0, dst, to);
+    IntAsBytes(t1, dst, to + 4);
+    IntAsBytes(t2, dst, to + 8);
+    IntAsBytes(t3, dst, to + 12);
+    IntAsBytes(t4, dst, to + 16);
+    IntAsBytes(t5, dst, to + 20);
+    IntAsBytes(t6, dst, to + 24);
+    IntAsBytes(t7, dst, to + 28);
   }
 }
@@ -24,6 +24,8 @@
 package com.kryptel.cipher;
 
 
+import static com.kryptel.Capabilities.CAP_KEY_SCHEDULE_CACHE;
+import static com.kryptel.Capabilities.CAP_PARALLEL_CIPHER;
 import static com.kryptel.Constants.DEFAULT_BUFFER_SIZE;
 import static com.kryptel.Constants.DEFAULT_VALUE;
 import static com.kryptel.Constants.TYPE_BLOCK_CIPHER;
@@ -31,19 +33,26 @@ import static com.kryptel.Guids.IID_IBlockCipher;
 import static com.kryptel.Guids.IID_IBlockCipherParams;
 import static com.kryptel.Guids.IID_ICipher;
 import static com.kryptel.Guids.IID_ICipherParams;
+import static com.kryptel.Guids.IID_IComponentCapabilities;
 import static com.kryptel.Guids.IID_IComponentState;
 import static com.kryptel.Guids.IID_IKryptelComponent;
 import static com.kryptel.Guids.IID_IRawBlockCipher;
+import static com.kryptel.bslx.Conversions.GetAsLong;
+import static com.kryptel.bslx.Conversions.LongAsBytes;
 
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.kryptel.IComponentCapabilities;
 import com.kryptel.IComponentState;
 import com.kryptel.IDataSink;
 import com.kryptel.IKryptelComponent;
 import com.kryptel.Message;
+import com.kryptel.rng.PseudoRandom;
 
 
 abstract class BlockCipherBase implements IKryptelComponent,
@@ -67,6 +76,7 @@ abstract class BlockCipherBase implements IKryptelComponent,
 	public Object GetInterface(UUID iid) {
 		if (iid.equals(IID_IKryptelComponent) ||
 				iid.equals(IID_IComponentState) ||
+				iid.equals(IID_IComponentCapabilities) ||
 				iid.equals(IID_ICipherParams) ||
 				iid.equals(IID_IBlockCipherParams) ||
 				iid.equals(IID_IRawBlockCipher)) return this;
@@ -107,6 +117,10 @@ abstract class BlockCipherBase implements IKryptelComponent,
 			Arrays.fill(ctrCounter, (byte)0);
 			ctrCounter = null;
 		}
+		if (bulkBuffer != null) {
+			Arrays.fill(bulkBuffer, (byte)0);
+			bulkBuffer = null;
+		}
 	}
 	
 	
@@ -274,6 +288,16 @@ abstract class BlockCipherBase implements IKryptelComponent,
 		DecryptBasicBlock(dst, to, src, from);
 	}
 
+	public void EncryptBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) throws Exception {
+		SetupKey();
+		if (nBlocks > 0) EncryptBasicBlocks(dst, to, src, from, nBlocks);
+	}
+
+	public void DecryptBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) throws Exception {
+		SetupKey();
+		if (nBlocks > 0) DecryptBasicBlocks(dst, to, src, from, nBlocks);
+	}
+
 	
   //
   // IBlockCipher
@@ -304,6 +328,13 @@ abstract class BlockCipherBase implements IKryptelComponent,
 		public void Done() throws Exception {
 			currentState = State.Idle;
 		}
+
+		public void Seek(long blockIndex) throws Exception {
+			if (currentState != State.FirstBlockOp && currentState != State.BlockEncryption && currentState != State.BlockDecryption) throw new Exception(Message.Get(Message.Code.InvalidState));
+			if (chainingMode != MODE_CTR || blockIndex < 0) throw new Exception(Message.Get(Message.Code.InvalidArg));
+			SetupFeeds();			// Back to the first block
+			AdvanceCounter(blockIndex);
+		}
 	}
 
 	
@@ -317,7 +348,7 @@ abstract class BlockCipherBase implements IKryptelComponent,
   	byte[] Buffer;
   	int bufPtr;
   	
-  	SecureRandom rand;
+  	final SecureRandom rand = PseudoRandom.GetInstance();
   	byte[] header = new byte [17];
   	boolean removeHeader;
 
@@ -326,12 +357,6 @@ abstract class BlockCipherBase implements IKryptelComponent,
 			SetupKey();
 			SetupFeeds();
 			
-			if (rand == null) {
-				rand = new SecureRandom();
-				assert (cipherBlockSize != 0);
-				rand.setSeed(rand.generateSeed(cipherBlockSize));
-			}
-			
 			if (Buffer == null) {
 				Buffer = new byte [DEFAULT_BUFFER_SIZE];
 				assert ((Buffer.length % cipherBlockSize) == 0);
@@ -346,16 +371,7 @@ abstract class BlockCipherBase implements IKryptelComponent,
 		}
 		
 		public void Encrypt(byte[] src, int start, int size) throws Exception {
-			if (currentState == State.FirstOp) {
-				rand.nextBytes(header);
-				header[0] &= (byte)0x0F;
-				header[0] += 2;
-				if ((header[0] % cipherBlockSize) == 0) header[0]++;
-				bufPtr = header[0];
-		    System.arraycopy(header, 0, Buffer, 0, bufPtr);
-				currentState = State.Encryption;
-			}
-			CheckState(State.Encryption);
+			StartEncryption();
 			
 			int len;
 			while (size > 0) {
@@ -365,23 +381,14 @@ abstract class BlockCipherBase implements IKryptelComponent,
 				size -= len;
 				
 				bufPtr += len;
-				if (bufPtr == Buffer.length) {
-					EncryptData(Buffer, 0, Buffer.length / cipherBlockSize);
-					dataSink.PutData(Buffer, 0, Buffer.length);
-					bufPtr = 0;
-				}
+				if (bufPtr == Buffer.length) FlushEncrypted();
 			}
 		}
 		
 		public void Decrypt(byte[] src, int start, int size) throws Exception {
-			if (currentState == State.FirstOp) {
-				bufPtr = 0;
-				removeHeader = true;
-				currentState = State.Decryption;
-			}
-			CheckState(State.Decryption);
+			StartDecryption();
 			
-			int len, ofs;
+			int len;
 			while (size > 0) {
 				len = Math.min(size, (Buffer.length - bufPtr));
 				System.arraycopy(src, start, Buffer, bufPtr, len);
@@ -389,23 +396,98 @@ abstract class BlockCipherBase implements IKryptelComponent,
 				size -= len;
 				
 				bufPtr += len;
-				if (bufPtr == Buffer.length) {
-					// Process the data except the last block because it may contain the aligning tail
-					DecryptData(Buffer, 0, Buffer.length / cipherBlockSize - 1);
-					// Remove the header if necessary
-					if (removeHeader) {
-						ofs = Buffer[0];
-						removeHeader = false;
-					}
-					else
-						ofs = 0;
-					dataSink.PutData(Buffer, ofs, Buffer.length - ofs - cipherBlockSize);
-					System.arraycopy(Buffer, Buffer.length - cipherBlockSize, Buffer, 0, cipherBlockSize);
-					bufPtr = cipherBlockSize;
-				}
+				if (bufPtr == Buffer.length) FlushDecrypted();
 			}
 		}
 		
+		public void Encrypt(ByteBuffer src) throws Exception {
+			if (src.hasArray()) {
+				Encrypt(src.array(), src.arrayOffset() + src.position(), src.remaining());
+				src.position(src.limit());
+				return;
+			}
+			StartEncryption();
+
+			// A direct buffer is read straight into the stream buffer, as the array data is
+			int len;
+			while (src.hasRemaining()) {
+				len = Math.min(src.remaining(), (Buffer.length - bufPtr));
+				src.get(Buffer, bufPtr, len);
+				bufPtr += len;
+				if (bufPtr == Buffer.length) FlushEncrypted();
+			}
+		}
+
+		public void Decrypt(ByteBuffer src) throws Exception {
+			if (src.hasArray()) {
+				Decrypt(src.array(), src.arrayOffset() + src.position(), src.remaining());
+				src.position(src.limit());
+				return;
+			}
+			StartDecryption();
+
+			int len;
+			while (src.hasRemaining()) {
+				len = Math.min(src.remaining(), (Buffer.length - bufPtr));
+				src.get(Buffer, bufPtr, len);
+				bufPtr += len;
+				if (bufPtr == Buffer.length) FlushDecrypted();
+			}
+		}
+
+		public void EncryptInPlace(byte[] buf, int start, int size) throws Exception {
+			StartEncryption();
+			if (size < IN_PLACE_MIN_BLOCKS * cipherBlockSize) {
+				Encrypt(buf, start, size);
+				return;
+			}
+
+			// Complete the buffered block and flush the buffer, which holds at least the header on the first call
+			int len = (cipherBlockSize - bufPtr % cipherBlockSize) % cipherBlockSize;
+			System.arraycopy(buf, start, Buffer, bufPtr, len);
+			bufPtr += len;
+			start += len;
+			size -= len;
+			if (bufPtr > 0) {
+				EncryptData(Buffer, 0, bufPtr / cipherBlockSize);
+				dataSink.PutData(Buffer, 0, bufPtr);
+			}
+
+			// Whole blocks are encrypted where they are, the partial tail is carried over
+			len = size - size % cipherBlockSize;
+			EncryptData(buf, start, len / cipherBlockSize);
+			dataSink.PutData(buf, start, len);
+			bufPtr = size - len;
+			System.arraycopy(buf, start + len, Buffer, 0, bufPtr);
+		}
+
+		public void DecryptInPlace(byte[] buf, int start, int size) throws Exception {
+			StartDecryption();
+			// Until the header has been removed, and for short requests, go through the buffer
+			if (removeHeader || size < IN_PLACE_MIN_BLOCKS * cipherBlockSize) {
+				Decrypt(buf, start, size);
+				return;
+			}
+
+			// Complete the buffered block and flush the buffer
+			int len = (cipherBlockSize - bufPtr % cipherBlockSize) % cipherBlockSize;
+			System.arraycopy(buf, start, Buffer, bufPtr, len);
+			bufPtr += len;
+			start += len;
+			size -= len;
+			if (bufPtr > 0) {
+				DecryptData(Buffer, 0, bufPtr / cipherBlockSize);
+				dataSink.PutData(Buffer, 0, bufPtr);
+			}
+
+			// Decrypt whole blocks where they are, except the last one, which may contain the aligning tail
+			len = size - size % cipherBlockSize - cipherBlockSize;
+			DecryptData(buf, start, len / cipherBlockSize);
+			dataSink.PutData(buf, start, len);
+			bufPtr = size - len;
+			System.arraycopy(buf, start + len, Buffer, 0, bufPtr);
+		}
+
 		public void Done() throws Exception {
 			if (currentState == State.Encryption) {
 				// Align to block size
@@ -443,6 +525,50 @@ abstract class BlockCipherBase implements IKryptelComponent,
 			dataSink.Done();
 			currentState = State.Idle;
 		}
+
+		private void FlushEncrypted() throws Exception {
+			EncryptData(Buffer, 0, Buffer.length / cipherBlockSize);
+			dataSink.PutData(Buffer, 0, Buffer.length);
+			bufPtr = 0;
+		}
+
+		private void FlushDecrypted() throws Exception {
+			// Process the data except the last block because it may contain the aligning tail
+			DecryptData(Buffer, 0, Buffer.length / cipherBlockSize - 1);
+			// Remove the header if necessary
+			int ofs;
+			if (removeHeader) {
+				ofs = Buffer[0];
+				removeHeader = false;
+			}
+			else
+				ofs = 0;
+			dataSink.PutData(Buffer, ofs, Buffer.length - ofs - cipherBlockSize);
+			System.arraycopy(Buffer, Buffer.length - cipherBlockSize, Buffer, 0, cipherBlockSize);
+			bufPtr = cipherBlockSize;
+		}
+
+		private void StartEncryption() throws Exception {
+			if (currentState == State.FirstOp) {
+				rand.nextBytes(header);
+				header[0] &= (byte)0x0F;
+				header[0] += 2;
+				if ((header[0] % cipherBlockSize) == 0) header[0]++;
+				bufPtr = header[0];
+		    System.arraycopy(header, 0, Buffer, 0, bufPtr);
+				currentState = State.Encryption;
+			}
+			CheckState(State.Encryption);
+		}
+
+		private void StartDecryption() throws Exception {
+			if (currentState == State.FirstOp) {
+				bufPtr = 0;
+				removeHeader = true;
+				currentState = State.Decryption;
+			}
+			CheckState(State.Decryption);
+		}
 	}
 
 	
@@ -481,6 +607,14 @@ abstract class BlockCipherBase implements IKryptelComponent,
 	private BlockCipher blockCipher;
 	private StreamCipher streamCipher;
 
+	static final int BULK_BLOCKS = 64;		// Number of blocks processed by a single EncryptBasicBlocks/DecryptBasicBlocks call
+	private byte[] bulkBuffer;
+
+	static final int IN_PLACE_MIN_BLOCKS = BULK_BLOCKS;		// Shorter in-place requests are copied to the stream buffer
+
+	static final int PARALLEL_TASK_BLOCKS = 256;		// Smallest range of blocks handed to a single worker
+	static final int PARALLEL_MIN_BLOCKS = 4 * PARALLEL_TASK_BLOCKS;		// Smaller requests are processed on the calling thread
+
 	
 	void CheckState(State state) throws Exception {
 		if (currentState != state) throw new Exception(Message.Get(Message.Code.InvalidState));
@@ -492,7 +626,20 @@ abstract class BlockCipherBase implements IKryptelComponent,
 			if (cipherKey != null) Arrays.fill(cipherKey, (byte)0);
 			
 			cipherKey = Arrays.copyOf(userKey, cipherKeySize);
-			ExpandKey();
+			if ((compCapabilities & CAP_KEY_SCHEDULE_CACHE) != 0) {
+				ByteBuffer tag = KeyScheduleCache.Tag(ComponentID(), cipherKeySize, cipherBlockSize, cipherRounds, cipherScheme, cipherKey);
+				int[] schedule = KeyScheduleCache.Get(tag);
+				if (schedule != null)
+					LoadKeySchedule(schedule);
+				else {
+					ExpandKey();
+					schedule = SaveKeySchedule();
+					if (schedule != null) KeyScheduleCache.Put(tag, schedule);
+				}
+				if (schedule != null) Arrays.fill(schedule, 0);
+			}
+			else
+				ExpandKey();
 			keyNeedsExpanding = false;
 		}
 	}
@@ -516,22 +663,28 @@ abstract class BlockCipherBase implements IKryptelComponent,
 
     if (ctrCounter == null) ctrCounter = new byte[cipherBlockSize];
     System.arraycopy(cipherFeed, 0, ctrCounter, 0, cipherBlockSize);
+
+    if (bulkBuffer == null || bulkBuffer.length != BULK_BLOCKS * cipherBlockSize) {
+    	if (bulkBuffer != null) Arrays.fill(bulkBuffer, (byte)0);
+    	bulkBuffer = new byte[BULK_BLOCKS * cipherBlockSize];
+    }
   }
-	
+
+  private void XorBlocks(byte[] dst, int to, byte[] src, int from, int len) {
+    for (int i = 0; i < len; i++) dst[to + i] ^= src[from + i];
+  }
+
   private void EncryptData(byte[] block, int start, int nblocks) {
     int offset = 0;
 
     switch (chainingMode) {
       case MODE_ECB:
-        for (int i = 0; i < nblocks; i++) {
-          EncryptBasicBlock(block, start + offset, block, start + offset);
-          offset += cipherBlockSize;
-        }
+        if (nblocks > 0) EncryptBasicBlocks(block, start, block, start, nblocks);
         break;
 
       case MODE_CBC:
         for (int i = 0; i < nblocks; i++) {
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
+          XorBlocks(block, start + offset, cipherFeed, 0, cipherBlockSize);
           EncryptBasicBlock(block, start + offset, block, start + offset);
           System.arraycopy(block, start + offset, cipherFeed, 0, cipherBlockSize);
           offset += cipherBlockSize;
@@ -540,7 +693,7 @@ abstract class BlockCipherBase implements IKryptelComponent,
 
       case MODE_CFB:
         for (int i = 0; i < nblocks; i++) {
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
+          XorBlocks(block, start + offset, cipherFeed, 0, cipherBlockSize);
           EncryptBasicBlock(cipherFeed, 0, block, start + offset);
           offset += cipherBlockSize;
         }
@@ -548,22 +701,14 @@ abstract class BlockCipherBase implements IKryptelComponent,
 
       case MODE_OFB:
         for (int i = 0; i < nblocks; i++) {
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
+          XorBlocks(block, start + offset, cipherFeed, 0, cipherBlockSize);
           EncryptBasicBlock(cipherFeed, 0, cipherFeed, 0);
           offset += cipherBlockSize;
         }
         break;
 
       case MODE_CTR:
-        for (int i = 0; i < nblocks; i++) {
-          EncryptBasicBlock(cipherFeed, 0, ctrCounter, 0);
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
-          for (int j = 0; j < cipherBlockSize; j++) {   // Increase counter
-          	ctrCounter[j]++;
-            if (ctrCounter[j] != 0) break;
-          }
-          offset += cipherBlockSize;
-        }
+        CounterModeData(block, start, nblocks);
         break;
     }
   }
@@ -573,59 +718,208 @@ abstract class BlockCipherBase implements IKryptelComponent,
 
     switch (chainingMode) {
       case MODE_ECB:
-        for (int i = 0; i < nblocks; i++) {
-          DecryptBasicBlock(block, start + offset, block, start + offset);
-          offset += cipherBlockSize;
-        }
+        if (nblocks > 0) DecryptBasicBlocks(block, start, block, start, nblocks);
         break;
 
       case MODE_CBC:
-        for (int i = 0; i < nblocks; i++) {
-        	System.arraycopy(block, start + offset, ctrCounter, 0, cipherBlockSize);
-          DecryptBasicBlock(block, start + offset, block, start + offset);
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
-          System.arraycopy(ctrCounter, 0, cipherFeed, 0, cipherBlockSize);
-          offset += cipherBlockSize;
-        }
-        break;
-
       case MODE_CFB:
-        for (int i = 0; i < nblocks; i++) {
-        	System.arraycopy(block, start + offset, ctrCounter, 0, cipherBlockSize);
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
-          EncryptBasicBlock(cipherFeed, 0, ctrCounter, 0);
-          offset += cipherBlockSize;
+        if (UseParallel(nblocks)) {
+          // Both modes need only the previous ciphertext block, so the ranges can be decrypted independently
+          int last = start + (nblocks - 1) * cipherBlockSize;
+          byte[] lastBlock = Arrays.copyOfRange(block, last, last + cipherBlockSize);
+          ForkJoinPool.commonPool().invoke(new ParallelTask(chainingMode, block, start, nblocks, Arrays.copyOf(cipherFeed, cipherBlockSize)));
+          System.arraycopy(lastBlock, 0, cipherFeed, 0, cipherBlockSize);
+          if (chainingMode == MODE_CFB) EncryptBasicBlock(cipherFeed, 0, cipherFeed, 0);
+          Arrays.fill(lastBlock, (byte)0);
         }
+        else
+          DecryptChainRange(chainingMode, block, start, nblocks, cipherFeed, bulkBuffer);
         break;
 
       case MODE_OFB:
         for (int i = 0; i < nblocks; i++) {
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
+          XorBlocks(block, start + offset, cipherFeed, 0, cipherBlockSize);
           EncryptBasicBlock(cipherFeed, 0, cipherFeed, 0);
           offset += cipherBlockSize;
         }
         break;
 
       case MODE_CTR:
-        for (int i = 0; i < nblocks; i++) {
-          EncryptBasicBlock(cipherFeed, 0, ctrCounter, 0);
-          for (int j = 0; j < cipherBlockSize; j++) block[start + offset + j] ^= cipherFeed[j];
-          for (int j = 0; j < cipherBlockSize; j++) {   // Increase counter
-          	ctrCounter[j]++;
-            if (ctrCounter[j] != 0) break;
-          }
-          offset += cipherBlockSize;
-        }
+        CounterModeData(block, start, nblocks);
         break;
     }
   }
+
+  // CBC or CFB decryption of nblocks using and updating the given feed; scratch must hold BULK_BLOCKS blocks
+  private void DecryptChainRange(int mode, byte[] block, int start, int nblocks, byte[] feed, byte[] scratch) {
+    int offset = 0;
+    int n, len;
+
+    while (nblocks > 0) {
+      n = Math.min(nblocks, BULK_BLOCKS);
+      len = n * cipherBlockSize;
+      if (mode == MODE_CBC) {
+        System.arraycopy(block, start + offset, scratch, 0, len);			// Keep the ciphertext, it is the feed for the next block
+        DecryptBasicBlocks(block, start + offset, block, start + offset, n);
+      }
+      else
+        EncryptBasicBlocks(scratch, 0, block, start + offset, n);				// Feeds for the next blocks
+      XorBlocks(block, start + offset, feed, 0, cipherBlockSize);
+      XorBlocks(block, start + offset + cipherBlockSize, scratch, 0, len - cipherBlockSize);
+      System.arraycopy(scratch, len - cipherBlockSize, feed, 0, cipherBlockSize);
+      offset += len;
+      nblocks -= n;
+    }
+  }
+
+  private void CounterModeData(byte[] block, int start, int nblocks) {
+    if (UseParallel(nblocks)) {
+      ForkJoinPool.commonPool().invoke(new ParallelTask(MODE_CTR, block, start, nblocks, Arrays.copyOf(ctrCounter, cipherBlockSize)));
+      AdvanceCounter(nblocks);
+    }
+    else {
+      CounterModeRange(block, start, nblocks, ctrCounter, bulkBuffer);
+      if (nblocks > 0) System.arraycopy(bulkBuffer, ((nblocks - 1) % BULK_BLOCKS) * cipherBlockSize, cipherFeed, 0, cipherBlockSize);
+    }
+  }
+
+  // Encrypts (or decrypts) nblocks using and advancing the given counter; scratch must hold BULK_BLOCKS blocks
+  private void CounterModeRange(byte[] block, int start, int nblocks, byte[] counter, byte[] scratch) {
+    int offset = 0;
+    int n, len;
+
+    while (nblocks > 0) {
+      n = Math.min(nblocks, BULK_BLOCKS);
+      len = n * cipherBlockSize;
+      GenerateCounters(counter, scratch, n);
+      EncryptBasicBlocks(scratch, 0, scratch, 0, n);
+      XorBlocks(block, start + offset, scratch, 0, len);
+      offset += len;
+      nblocks -= n;
+    }
+  }
+
+  // Writes n successive counter values to dst and advances the counter past them.
+  // Same result as copying and incrementing byte by byte, but the low 8 bytes are kept in a long.
+  private static void GenerateCounters(byte[] counter, byte[] dst, int n) {
+    int blockSize = counter.length;
+    long low = GetAsLong(counter, 0);
+    for (int pos = 0, end = n * blockSize; pos < end; pos += blockSize) {
+      LongAsBytes(low, dst, pos);
+      System.arraycopy(counter, 8, dst, pos + 8, blockSize - 8);
+      if (++low == 0) {		// Carry into the upper bytes
+        for (int j = 8; j < blockSize; j++) {
+          counter[j]++;
+          if (counter[j] != 0) break;
+        }
+      }
+    }
+    LongAsBytes(low, counter, 0);
+  }
+
+  // Skips nblocks of the key stream, leaving cipherFeed as it would be after processing them
+  private void AdvanceCounter(long nblocks) {
+    if (nblocks > 0) {
+      AddToCounter(ctrCounter, nblocks - 1);
+      EncryptBasicBlock(cipherFeed, 0, ctrCounter, 0);		// The last key stream block
+      AddToCounter(ctrCounter, 1);
+    }
+  }
+
+  // Same result as n successive byte-wise increments; the counter is a little-endian number of at least 8 bytes
+  private static void AddToCounter(byte[] counter, long n) {
+    long low = GetAsLong(counter, 0);
+    long sum = low + n;
+    LongAsBytes(sum, counter, 0);
+    if ((sum ^ Long.MIN_VALUE) < (low ^ Long.MIN_VALUE)) {		// Unsigned overflow, carry into the upper bytes
+      for (int j = 8; j < counter.length; j++) {
+        counter[j]++;
+        if (counter[j] != 0) break;
+      }
+    }
+  }
+
+  private boolean UseParallel(int nblocks) {
+    return nblocks >= PARALLEL_MIN_BLOCKS && (compCapabilities & CAP_PARALLEL_CIPHER) != 0 && ForkJoinPool.getCommonPoolParallelism() > 1;
+  }
+
+  // Splits a range in halves until it is small enough. The state is the counter (CTR) or the feed (CBC and CFB decryption)
+  // for the first block of the range; the right half's state is derived before either half is processed.
+  private class ParallelTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int mode;
+    private final byte[] block;
+    private final int start;
+    private final int nblocks;
+    private final byte[] state;
+
+    ParallelTask(int mode, byte[] block, int start, int nblocks, byte[] state) {
+      this.mode = mode;
+      this.block = block;
+      this.start = start;
+      this.nblocks = nblocks;
+      this.state = state;
+    }
+
+    protected void compute() {
+      if (nblocks <= 2 * PARALLEL_TASK_BLOCKS) {
+        byte[] scratch = new byte[BULK_BLOCKS * cipherBlockSize];
+        if (mode == MODE_CTR)
+          CounterModeRange(block, start, nblocks, state, scratch);
+        else
+          DecryptChainRange(mode, block, start, nblocks, state, scratch);
+        Arrays.fill(scratch, (byte)0);
+        Arrays.fill(state, (byte)0);
+      }
+      else {
+        int n = nblocks / 2;
+        int split = start + n * cipherBlockSize;
+        byte[] rightState;
+        if (mode == MODE_CTR) {
+          rightState = Arrays.copyOf(state, state.length);
+          AddToCounter(rightState, n);
+        }
+        else {
+          rightState = Arrays.copyOfRange(block, split - cipherBlockSize, split);
+          if (mode == MODE_CFB) EncryptBasicBlock(rightState, 0, rightState, 0);
+        }
+        invokeAll(new ParallelTask(mode, block, start, n, state),
+                  new ParallelTask(mode, block, split, nblocks - n, rightState));
+      }
+    }
+  }
 	
 	
 	//
 	// These methods actually implement the block cipher
 	//
+	// Children may override EncryptBasicBlocks and DecryptBasicBlocks with a tighter loop;
+	// dst and src either point to the same area or do not overlap
+	//
 
   protected abstract void ExpandKey();
   protected abstract void EncryptBasicBlock(byte[] dst, int to, byte[] src, int from);
   protected abstract void DecryptBasicBlock(byte[] dst, int to, byte[] src, int from);
+
+  // Children with an expensive ExpandKey may return a copy of the expanded key to be cached
+  // and restore it in LoadKeySchedule; null means the schedule is not cached
+  protected int[] SaveKeySchedule() { return null; }
+  protected void LoadKeySchedule(int[] schedule) { }
+
+  protected void EncryptBasicBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    for (int i = 0; i < nBlocks; i++) {
+      EncryptBasicBlock(dst, to, src, from);
+      to += cipherBlockSize;
+      from += cipherBlockSize;
+    }
+  }
+
+  protected void DecryptBasicBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    for (int i = 0; i < nBlocks; i++) {
+      DecryptBasicBlock(dst, to, src, from);
+      to += cipherBlockSize;
+      from += cipherBlockSize;
+    }
+  }
 }
@@ -26,7 +26,8 @@ package com.kryptel.cipher;
 
 import static com.kryptel.Guids.CID_CIPHER_BLOWFISH;
 import static com.kryptel.bslx.Conversions.FromBytes;
-import static com.kryptel.bslx.Conversions.ToBytes;
+import static com.kryptel.bslx.Conversions.GetAsInt;
+import static com.kryptel.bslx.Conversions.IntAsBytes;
 
 import java.util.UUID;
 
@@ -205,13 +206,29 @@ final class Blowfish extends BlockCipherBase {
   // S-Boxes
   private int[] pArray = new int[18];
   private int[] sBoxes = new int[1024];
-
-  private int[] temp = new int[1];
   
   
-  private int Iterate(int xL, int xR, int n) {
-    return xR ^ ((sBoxes[xL >>> 24] + sBoxes[((xL >>> 16) & 0xFF) + 256]) ^
-            		sBoxes[((xL >>> 8) & 0xFF) + 512]) + sBoxes[(xL & 0xFF) + 768];
+  private static int F(int[] s, int x) {
+    return ((s[x >>> 24] + s[((x >>> 16) & 0xFF) + 256]) ^ s[((x >>> 8) & 0xFF) + 512]) + s[(x & 0xFF) + 768];
+  }
+
+  // Sixteen rounds and output whitening on the block halves; returns (xl << 32 | xr)
+  private long Encipher(int xl, int xr) {
+    final int[] s = sBoxes, p = pArray;
+    for (int i = 0; i < 16; i += 2) {
+      xl ^= p[i]; xr ^= F(s, xl);
+      xr ^= p[i + 1]; xl ^= F(s, xr);
+    }
+    return ((long)(xl ^ p[16]) << 32) | ((xr ^ p[17]) & 0xFFFFFFFFL);
+  }
+
+  private long Decipher(int xl, int xr) {
+    final int[] s = sBoxes, p = pArray;
+    for (int i = 17; i > 1; i -= 2) {
+      xl ^= p[i]; xr ^= F(s, xl);
+      xr ^= p[i - 1]; xl ^= F(s, xr);
+    }
+    return ((long)(xl ^ p[1]) << 32) | ((xr ^ p[0]) & 0xFFFFFFFFL);
   }
 
 	
@@ -222,7 +239,6 @@ final class Blowfish extends BlockCipherBase {
   protected void ExpandKey() {
     byte[] kb = new byte[72];
     int[] kd = new int[18];
-    byte[] cb = { 0, 0, 0, 0, 0, 0, 0, 0 };
 
     for (int i = 0; i < 18; i++)
       for (int j = 0; j < 4; j++)
@@ -231,84 +247,45 @@ final class Blowfish extends BlockCipherBase {
     for (int i = 0; i < 18; i++) pArray[i] = kd[i] ^ PiDigits[i];
     for (int i = 0; i < 1024; i++) sBoxes[i] = PiDigits[i + 18];
 
+    int xl = 0, xr = 0;
+    long x;
+
     for (int i = 0; i < 9; i++) {
-      EncryptBasicBlock(cb, 0, cb, 0);
-      FromBytes(pArray, i * 2 * 4, cb, 4, 4);
-      FromBytes(pArray, (i * 2 + 1) * 4, cb, 0, 4);
+      x = Encipher(xr, xl);
+      xl = (int)(x >>> 32); xr = (int)x;
+      pArray[i * 2] = xr;
+      pArray[i * 2 + 1] = xl;
     }
 
     for (int i = 0; i < 512; i++) {
-      EncryptBasicBlock(cb, 0, cb, 0);
-      FromBytes(sBoxes, i * 2 * 4, cb, 4, 4);
-      FromBytes(sBoxes, (i * 2 + 1) * 4, cb, 0, 4);
+      x = Encipher(xr, xl);
+      xl = (int)(x >>> 32); xr = (int)x;
+      sBoxes[i * 2] = xr;
+      sBoxes[i * 2 + 1] = xl;
     }
 	}
 	
+  protected int[] SaveKeySchedule() {
+    int[] schedule = new int[18 + 1024];
+    System.arraycopy(pArray, 0, schedule, 0, 18);
+    System.arraycopy(sBoxes, 0, schedule, 18, 1024);
+    return schedule;
+  }
+
+  protected void LoadKeySchedule(int[] schedule) {
+    System.arraycopy(schedule, 0, pArray, 0, 18);
+    System.arraycopy(schedule, 18, sBoxes, 0, 1024);
+  }
+	
   protected void EncryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
-    int xl, xr;
-
-    FromBytes(temp, 0, src, from, 4);
-    xr = temp[0];
-    FromBytes(temp, 0, src, from + 4, 4);
-    xl = temp[0];
-    
-    xl ^= pArray[0]; xr = Iterate(xl, xr, 0);
-    xr ^= pArray[1]; xl = Iterate(xr, xl, 1);
-    xl ^= pArray[2]; xr = Iterate(xl, xr, 2);
-    xr ^= pArray[3]; xl = Iterate(xr, xl, 3);
-    xl ^= pArray[4]; xr = Iterate(xl, xr, 4);
-    xr ^= pArray[5]; xl = Iterate(xr, xl, 5);
-    xl ^= pArray[6]; xr = Iterate(xl, xr, 6);
-    xr ^= pArray[7]; xl = Iterate(xr, xl, 7);
-    xl ^= pArray[8]; xr = Iterate(xl, xr, 8);
-    xr ^= pArray[9]; xl = Iterate(xr, xl, 9);
-    xl ^= pArray[10]; xr = Iterate(xl, xr, 10);
-    xr ^= pArray[11]; xl = Iterate(xr, xl, 11);
-    xl ^= pArray[12]; xr = Iterate(xl, xr, 12);
-    xr ^= pArray[13]; xl = Iterate(xr, xl, 13);
-    xl ^= pArray[14]; xr = Iterate(xl, xr, 14);
-    xr ^= pArray[15]; xl = Iterate(xr, xl, 15);
-
-    xl ^= pArray[16];
-    xr ^= pArray[17];
-
-    temp[0] = xl;
-    ToBytes(dst, to, temp, 0, 4);
-    temp[0] = xr;
-    ToBytes(dst, to + 4, temp, 0, 4);
+    long x = Encipher(GetAsInt(src, from + 4), GetAsInt(src, from));
+    IntAsBytes((int)(x >>> 32), dst, to);
+    IntAsBytes((int)x, dst, to + 4);
 	}
 	
   protected void DecryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
-    int xl, xr;
-
-    FromBytes(temp, 0, src, from, 4);
-    xr = temp[0];
-    FromBytes(temp, 0, src, from + 4, 4);
-    xl = temp[0];
-
-    xl ^= pArray[17]; xr = Iterate(xl, xr, 17);
-    xr ^= pArray[16]; xl = Iterate(xr, xl, 16);
-    xl ^= pArray[15]; xr = Iterate(xl, xr, 15);
-    xr ^= pArray[14]; xl = Iterate(xr, xl, 14);
-    xl ^= pArray[13]; xr = Iterate(xl, xr, 13);
-    xr ^= pArray[12]; xl = Iterate(xr, xl, 12);
-    xl ^= pArray[11]; xr = Iterate(xl, xr, 11);
-    xr ^= pArray[10]; xl = Iterate(xr, xl, 10);
-    xl ^= pArray[9]; xr = Iterate(xl, xr, 9);
-    xr ^= pArray[8]; xl = Iterate(xr, xl, 8);
-    xl ^= pArray[7]; xr = Iterate(xl, xr, 7);
-    xr ^= pArray[6]; xl = Iterate(xr, xl, 6);
-    xl ^= pArray[5]; xr = Iterate(xl, xr, 5);
-    xr ^= pArray[4]; xl = Iterate(xr, xl, 4);
-    xl ^= pArray[3]; xr = Iterate(xl, xr, 3);
-    xr ^= pArray[2]; xl = Iterate(xr, xl, 2);
-
-    xl ^= pArray[1];
-    xr ^= pArray[0];
-
-    temp[0] = xl;
-    ToBytes(dst, to, temp, 0, 4);
-    temp[0] = xr;
-    ToBytes(dst, to + 4, temp, 0, 4);
+    long x = Decipher(GetAsInt(src, from + 4), GetAsInt(src, from));
+    IntAsBytes((int)(x >>> 32), dst, to);
+    IntAsBytes((int)x, dst, to + 4);
 	}
 }
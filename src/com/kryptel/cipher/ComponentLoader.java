@@ -24,6 +24,12 @@
 package com.kryptel.cipher;
 
 
+import static com.kryptel.Capabilities.CAP_CALIBRATED_SELECTION;
+import static com.kryptel.Capabilities.CAP_DEFAULT_CAPABILITIES;
+import static com.kryptel.Capabilities.CAP_KEY_SCHEDULE_CACHE;
+import static com.kryptel.Capabilities.CAP_OPTIMIZED_CIPHERS;
+import static com.kryptel.Capabilities.CAP_PARALLEL_CIPHER;
+import static com.kryptel.Capabilities.CAP_PLATFORM_CRYPTO;
 import static com.kryptel.Guids.CID_CIPHER_AES;
 import static com.kryptel.Guids.CID_CIPHER_BLOWFISH;
 import static com.kryptel.Guids.CID_CIPHER_DES;
@@ -31,21 +37,25 @@ import static com.kryptel.Guids.CID_CIPHER_SERPENT;
 import static com.kryptel.Guids.CID_CIPHER_TRIPLE_DES;
 import static com.kryptel.Guids.CID_CIPHER_TWOFISH;
 import static com.kryptel.Guids.CID_NULL_CIPHER;
+import static com.kryptel.Guids.IID_IBlockCipher;
+import static com.kryptel.Guids.IID_IBlockCipherParams;
+import static com.kryptel.cipher.IBlockCipherParams.MODE_CTR;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 
 import com.kryptel.IKryptelComponent;
 
 
 public final class ComponentLoader {
 	public static IKryptelComponent CreateComponent(UUID cid, long capabilities) {
-		if (cid.equals(CID_CIPHER_AES)) return new Aes(capabilities);
+		if (cid.equals(CID_CIPHER_AES)) return ((capabilities & CAP_PLATFORM_CRYPTO) != 0 && JcaAes.IsAvailable()) ? new JcaAes(capabilities) : new Aes(capabilities);
 		if (cid.equals(CID_CIPHER_BLOWFISH)) return new Blowfish(capabilities);
 		if (cid.equals(CID_CIPHER_DES)) return new Des(capabilities);
 		if (cid.equals(CID_CIPHER_TRIPLE_DES)) return new TripleDes(capabilities);
 		if (cid.equals(CID_CIPHER_SERPENT)) return new Serpent(capabilities);
-		if (cid.equals(CID_CIPHER_TWOFISH)) return new Twofish(capabilities);
+		if (cid.equals(CID_CIPHER_TWOFISH)) return ((capabilities & CAP_OPTIMIZED_CIPHERS) != 0) ? new FullKeyTwofish(capabilities) : new Twofish(capabilities);
 
 		if (cid.equals(CID_NULL_CIPHER)) return new NullCipher(capabilities);
 
@@ -62,4 +72,97 @@ public final class ComponentLoader {
 		if ((Twofish.componentType & mask) != 0) uidList.add(Twofish.componentID);
 		if ((NullCipher.componentType & mask) != 0) uidList.add(NullCipher.componentID);
 	}
+	
+	
+	// Erases expanded keys kept by ciphers created with CAP_KEY_SCHEDULE_CACHE
+	public static void ClearKeyScheduleCache() {
+		KeyScheduleCache.Clear();
+	}
+	
+	
+	// Returns the implementation-selecting capabilities that measured slower for cid (see Loader.Calibrate)
+	public static long Calibrate(UUID cid) throws Exception {
+		long candidates = SelectingCapabilities(cid);
+		long rejected = 0;
+
+		for (long bit = Long.lowestOneBit(candidates); bit != 0; candidates &= ~bit, bit = Long.lowestOneBit(candidates)) {
+			long with = (CALIBRATION_CAPABILITIES | bit) & ~rejected;		// Opt-in bits are not in the defaults
+			long without = with & ~bit;
+			long timeWith = Long.MAX_VALUE, timeWithout = Long.MAX_VALUE;
+
+			// Each variant is created and keyed once, so key expansion and cipher setup stay out of the timed runs
+			IKryptelComponent compWith = CreateComponent(cid, with);
+			IKryptelComponent compWithout = null;
+			try {
+				compWithout = CreateComponent(cid, without);
+				IBlockCipher cipherWith = StartCipher(compWith);
+				IBlockCipher cipherWithout = StartCipher(compWithout);
+				byte[] data = new byte [CALIBRATION_DATA_SIZE];
+
+				for (int i = 0; i < CALIBRATION_WARMUP_ROUNDS; i++) {
+					MeasureCipher(cipherWith, data);
+					MeasureCipher(cipherWithout, data);
+				}
+
+				// Alternate the runs so that both get the same JIT warm-up, and keep going long enough
+				// for the compiled code (and intrinsics) to replace the interpreted one
+				long deadline = System.nanoTime() + CALIBRATION_TIME;
+				for (int i = 0; i < CALIBRATION_MAX_ROUNDS && (i < CALIBRATION_MIN_ROUNDS || System.nanoTime() < deadline); i++) {
+					timeWith = Math.min(timeWith, MeasureCipher(cipherWith, data));
+					timeWithout = Math.min(timeWithout, MeasureCipher(cipherWithout, data));
+				}
+
+				cipherWith.Done();
+				cipherWithout.Done();
+			}
+			finally {
+				compWith.DiscardComponent();
+				if (compWithout != null) compWithout.DiscardComponent();
+			}
+			if (timeWithout < timeWith) rejected |= bit;
+		}
+		return rejected;
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+	private static final int CALIBRATION_WARMUP_ROUNDS = 4;
+	private static final int CALIBRATION_MIN_ROUNDS = 8;
+	private static final int CALIBRATION_MAX_ROUNDS = 256;
+	private static final long CALIBRATION_TIME = 1000000000L;		// Nanoseconds per measured capability
+	private static final int CALIBRATION_DATA_SIZE = 256 * 1024;		// Large enough for the parallel paths to be taken
+	private static final long CALIBRATION_CAPABILITIES = CAP_DEFAULT_CAPABILITIES & ~CAP_CALIBRATED_SELECTION & ~CAP_KEY_SCHEDULE_CACHE;
+
+	// Capability bits that select a different implementation of cid in this environment
+	private static long SelectingCapabilities(UUID cid) {
+		long caps = 0;
+		if (cid.equals(CID_CIPHER_AES) && JcaAes.IsAvailable()) caps |= CAP_PLATFORM_CRYPTO;
+		if (cid.equals(CID_CIPHER_TWOFISH)) caps |= CAP_OPTIMIZED_CIPHERS;
+		if (caps != 0 || cid.equals(CID_CIPHER_BLOWFISH) || cid.equals(CID_CIPHER_DES) || cid.equals(CID_CIPHER_TRIPLE_DES) || cid.equals(CID_CIPHER_SERPENT)) {
+			if (ForkJoinPool.getCommonPoolParallelism() > 1) caps |= CAP_PARALLEL_CIPHER;
+		}
+		return caps;
+	}
+
+	// Keys the cipher and starts CTR encryption with the default parameters; Init expands the key
+	private static IBlockCipher StartCipher(IKryptelComponent comp) throws Exception {
+		IBlockCipherParams params = (IBlockCipherParams)comp.GetInterface(IID_IBlockCipherParams);
+		byte[] key = new byte [params.GetKeySize()];
+		params.SetKey(key, 0, key.length);
+		params.SetChainingMode(MODE_CTR);
+
+		IBlockCipher cipher = (IBlockCipher)comp.GetInterface(IID_IBlockCipher);
+		cipher.Init();
+		return cipher;
+	}
+
+	// Time in nanoseconds to encrypt the calibration data with a started cipher
+	private static long MeasureCipher(IBlockCipher cipher, byte[] data) throws Exception {
+		long start = System.nanoTime();
+		cipher.Encrypt(data, 0, data.length);
+		return System.nanoTime() - start;
+	}
 }
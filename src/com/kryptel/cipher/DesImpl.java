@@ -25,7 +25,8 @@ package com.kryptel.cipher;
 
 
 import static com.kryptel.bslx.Conversions.FromBytes;
-import static com.kryptel.bslx.Conversions.ToBytes;
+import static com.kryptel.bslx.Conversions.GetAsInt;
+import static com.kryptel.bslx.Conversions.IntAsBytes;
 
 
 abstract class DesImpl extends BlockCipherBase {
@@ -279,20 +280,6 @@ abstract class DesImpl extends BlockCipherBase {
     y.v ^= SHL(t, sh);
   }
 
-  private static void ROUND(RefInt L, int r, int[][] k, int i) {
-    int u = r ^ k[0][i];
-    int v = r ^ k[1][i];
-    L.v ^= ( DesTable[0][ROL(u, 1)  & 0x3F] |
-		         DesTable[1][v >>> 3     & 0x3F] |
-		         DesTable[2][u >>> 7     & 0x3F] |
-		         DesTable[3][v >>> 11    & 0x3F] |
-		         DesTable[4][u >>> 15    & 0x3F] |
-		         DesTable[5][v >>> 19    & 0x3F] |
-		         DesTable[6][u >>> 23    & 0x3F] |
-		         DesTable[7][ROR(v, 27) & 0x3F]);
-  }
-
-
   static void DesExpandKey56(byte[] key, int pos, int[][] subkeys) {
     byte[] key64 = new byte[8];
     key64[7] = key[pos + 6];
@@ -361,303 +348,115 @@ abstract class DesImpl extends BlockCipherBase {
     }
   }
 
-  static void DesEncryptBlock(int[][] subkeys, byte[] dst, int to, byte[] src, int from) {
-    int[] block = new int[2];
-    FromBytes(block, 0, src, from, 8);
-
-    RefInt l = new RefInt();
-    RefInt r = new RefInt();
-    l.v = block[1]; r.v = block[0];
-
-    // Initial permutation
-
-    PERMUTE(r, l, 4, 0x0F0F0F0F);
-    PERMUTE(l, r, -16, 0xFFFF0000);
-    PERMUTE(l, r, 2, 0x33333333);
-    PERMUTE(l, r, 8, 0x00FF00FF);
-    PERMUTE(r, l, 1, 0x55555555);
-
-    // Encryption
-
-    ROUND(l, r.v, subkeys, 0);
-    ROUND(r, l.v, subkeys, 1);
-    ROUND(l, r.v, subkeys, 2);
-    ROUND(r, l.v, subkeys, 3);
-    ROUND(l, r.v, subkeys, 4);
-    ROUND(r, l.v, subkeys, 5);
-    ROUND(l, r.v, subkeys, 6);
-    ROUND(r, l.v, subkeys, 7);
-    ROUND(l, r.v, subkeys, 8);
-    ROUND(r, l.v, subkeys, 9);
-    ROUND(l, r.v, subkeys, 10);
-    ROUND(r, l.v, subkeys, 11);
-    ROUND(l, r.v, subkeys, 12);
-    ROUND(r, l.v, subkeys, 13);
-    ROUND(l, r.v, subkeys, 14);
-    ROUND(r, l.v, subkeys, 15);
-
-    // Final permutation
-
-    PERMUTE(l, r, 1, 0x55555555);
-    PERMUTE(r, l, 8, 0x00FF00FF);
-    PERMUTE(r, l, 2, 0x33333333);
-    PERMUTE(r, l, -16, 0xFFFF0000);
-    PERMUTE(l, r, 4, 0x0F0F0F0F);
-
-    block[0] = l.v;
-    block[1] = r.v;
-    ToBytes(dst, to, block, 0, 8);
+  //
+  // Block functions keep both halves in int locals and pass them between the permutation
+  // and round stages packed into one long, so a block is processed without allocation.
+  //
+
+  private static final int[] SP0 = DesTable[0], SP1 = DesTable[1], SP2 = DesTable[2], SP3 = DesTable[3],
+                             SP4 = DesTable[4], SP5 = DesTable[5], SP6 = DesTable[6], SP7 = DesTable[7];
+
+  private static long Pack(int hi, int lo) {
+    return ((long)hi << 32) | (lo & 0xFFFFFFFFL);
   }
 
-  static void DesDecryptBlock(int[][] subkeys, byte[] dst, int to, byte[] src, int from) {
-    int[] block = new int[2];
-    FromBytes(block, 0, src, from, 8);
-
-    RefInt l = new RefInt();
-    RefInt r = new RefInt();
-    l.v = block[1]; r.v = block[0];
-
-    // Initial permutation
-
-    PERMUTE(r, l, 4, 0x0F0F0F0F);
-    PERMUTE(l, r, -16, 0xFFFF0000);
-    PERMUTE(l, r, 2, 0x33333333);
-    PERMUTE(l, r, 8, 0x00FF00FF);
-    PERMUTE(r, l, 1, 0x55555555);
-
-    // Decryption
-
-    ROUND(l, r.v, subkeys, 15);
-    ROUND(r, l.v, subkeys, 14);
-    ROUND(l, r.v, subkeys, 13);
-    ROUND(r, l.v, subkeys, 12);
-    ROUND(l, r.v, subkeys, 11);
-    ROUND(r, l.v, subkeys, 10);
-    ROUND(l, r.v, subkeys, 9);
-    ROUND(r, l.v, subkeys, 8);
-    ROUND(l, r.v, subkeys, 7);
-    ROUND(r, l.v, subkeys, 6);
-    ROUND(l, r.v, subkeys, 5);
-    ROUND(r, l.v, subkeys, 4);
-    ROUND(l, r.v, subkeys, 3);
-    ROUND(r, l.v, subkeys, 2);
-    ROUND(l, r.v, subkeys, 1);
-    ROUND(r, l.v, subkeys, 0);
-
-    // Final permutation
-
-    PERMUTE(l, r, 1, 0x55555555);
-    PERMUTE(r, l, 8, 0x00FF00FF);
-    PERMUTE(r, l, 2, 0x33333333);
-    PERMUTE(r, l, -16, 0xFFFF0000);
-    PERMUTE(l, r, 4, 0x0F0F0F0F);
-
-    block[0] = l.v;
-    block[1] = r.v;
-    ToBytes(dst, to, block, 0, 8);
+  private static long Swap(long x) {
+    return (x << 32) | (x >>> 32);
   }
 
-  void Des3EncryptBlock(int[][] subkeys1, int[][] subkeys2, int[][] subkeys3, byte[] dst, int to, byte[] src, int from) {
-    int[] block = new int[2];
-    FromBytes(block, 0, src, from, 8);
-
-    RefInt l = new RefInt();
-    RefInt r = new RefInt();
-    l.v = block[1]; r.v = block[0];
-
-    // Initial permutation
-
-    PERMUTE(r, l, 4, 0x0F0F0F0F);
-    PERMUTE(l, r, -16, 0xFFFF0000);
-    PERMUTE(l, r, 2, 0x33333333);
-    PERMUTE(l, r, 8, 0x00FF00FF);
-    PERMUTE(r, l, 1, 0x55555555);
-
-    // Encryption
-
-    ROUND(l, r.v, subkeys1, 0);
-    ROUND(r, l.v, subkeys1, 1);
-    ROUND(l, r.v, subkeys1, 2);
-    ROUND(r, l.v, subkeys1, 3);
-    ROUND(l, r.v, subkeys1, 4);
-    ROUND(r, l.v, subkeys1, 5);
-    ROUND(l, r.v, subkeys1, 6);
-    ROUND(r, l.v, subkeys1, 7);
-    ROUND(l, r.v, subkeys1, 8);
-    ROUND(r, l.v, subkeys1, 9);
-    ROUND(l, r.v, subkeys1, 10);
-    ROUND(r, l.v, subkeys1, 11);
-    ROUND(l, r.v, subkeys1, 12);
-    ROUND(r, l.v, subkeys1, 13);
-    ROUND(l, r.v, subkeys1, 14);
-    ROUND(r, l.v, subkeys1, 15);
-
-    if (cipherScheme == 0) {
-      ROUND(r, l.v, subkeys2, 15);
-      ROUND(l, r.v, subkeys2, 14);
-      ROUND(r, l.v, subkeys2, 13);
-      ROUND(l, r.v, subkeys2, 12);
-      ROUND(r, l.v, subkeys2, 11);
-      ROUND(l, r.v, subkeys2, 10);
-      ROUND(r, l.v, subkeys2, 9);
-      ROUND(l, r.v, subkeys2, 8);
-      ROUND(r, l.v, subkeys2, 7);
-      ROUND(l, r.v, subkeys2, 6);
-      ROUND(r, l.v, subkeys2, 5);
-      ROUND(l, r.v, subkeys2, 4);
-      ROUND(r, l.v, subkeys2, 3);
-      ROUND(l, r.v, subkeys2, 2);
-      ROUND(r, l.v, subkeys2, 1);
-      ROUND(l, r.v, subkeys2, 0);
-    }
-    else {
-      ROUND(r, l.v, subkeys2, 0);
-      ROUND(l, r.v, subkeys2, 1);
-      ROUND(r, l.v, subkeys2, 2);
-      ROUND(l, r.v, subkeys2, 3);
-      ROUND(r, l.v, subkeys2, 4);
-      ROUND(l, r.v, subkeys2, 5);
-      ROUND(r, l.v, subkeys2, 6);
-      ROUND(l, r.v, subkeys2, 7);
-      ROUND(r, l.v, subkeys2, 8);
-      ROUND(l, r.v, subkeys2, 9);
-      ROUND(r, l.v, subkeys2, 10);
-      ROUND(l, r.v, subkeys2, 11);
-      ROUND(r, l.v, subkeys2, 12);
-      ROUND(l, r.v, subkeys2, 13);
-      ROUND(r, l.v, subkeys2, 14);
-      ROUND(l, r.v, subkeys2, 15);
-    }
+  private static int F(int r, int k0, int k1) {
+    int u = r ^ k0;
+    int v = r ^ k1;
+    return SP0[((u << 1) | (u >>> 31)) & 0x3F] |
+           SP1[v >>> 3  & 0x3F] |
+           SP2[u >>> 7  & 0x3F] |
+           SP3[v >>> 11 & 0x3F] |
+           SP4[u >>> 15 & 0x3F] |
+           SP5[v >>> 19 & 0x3F] |
+           SP6[u >>> 23 & 0x3F] |
+           SP7[((v >>> 27) | (v << 5)) & 0x3F];
+  }
 
-    ROUND(l, r.v, subkeys3, 0);
-    ROUND(r, l.v, subkeys3, 1);
-    ROUND(l, r.v, subkeys3, 2);
-    ROUND(r, l.v, subkeys3, 3);
-    ROUND(l, r.v, subkeys3, 4);
-    ROUND(r, l.v, subkeys3, 5);
-    ROUND(l, r.v, subkeys3, 6);
-    ROUND(r, l.v, subkeys3, 7);
-    ROUND(l, r.v, subkeys3, 8);
-    ROUND(r, l.v, subkeys3, 9);
-    ROUND(l, r.v, subkeys3, 10);
-    ROUND(r, l.v, subkeys3, 11);
-    ROUND(l, r.v, subkeys3, 12);
-    ROUND(r, l.v, subkeys3, 13);
-    ROUND(l, r.v, subkeys3, 14);
-    ROUND(r, l.v, subkeys3, 15);
-
-    // Final permutation
-
-    PERMUTE(l, r, 1, 0x55555555);
-    PERMUTE(r, l, 8, 0x00FF00FF);
-    PERMUTE(r, l, 2, 0x33333333);
-    PERMUTE(r, l, -16, 0xFFFF0000);
-    PERMUTE(l, r, 4, 0x0F0F0F0F);
-
-    block[0] = l.v;
-    block[1] = r.v;
-    ToBytes(dst, to, block, 0, 8);
+  // Returns (l << 32 | r) after the initial permutation
+  private static long InitialPermutation(byte[] src, int from) {
+    int r = GetAsInt(src, from);
+    int l = GetAsInt(src, from + 4);
+    int t;
+
+    t = ((l >>> 4) ^ r) & 0x0F0F0F0F;  r ^= t;  l ^= t << 4;
+    t = ((r << 16) ^ l) & 0xFFFF0000;  l ^= t;  r ^= t >>> 16;
+    t = ((r >>> 2) ^ l) & 0x33333333;  l ^= t;  r ^= t << 2;
+    t = ((r >>> 8) ^ l) & 0x00FF00FF;  l ^= t;  r ^= t << 8;
+    t = ((l >>> 1) ^ r) & 0x55555555;  r ^= t;  l ^= t << 1;
+
+    return Pack(l, r);
   }
 
-  void Des3DecryptBlock(int[][] subkeys1, int[][] subkeys2, int[][] subkeys3, byte[] dst, int to, byte[] src, int from) {
-    int[] block = new int[2];
-    FromBytes(block, 0, src, from, 8);
-
-    RefInt l = new RefInt();
-    RefInt r = new RefInt();
-    l.v = block[1]; r.v = block[0];
-
-    // Initial permutation
-
-    PERMUTE(r, l, 4, 0x0F0F0F0F);
-    PERMUTE(l, r, -16, 0xFFFF0000);
-    PERMUTE(l, r, 2, 0x33333333);
-    PERMUTE(l, r, 8, 0x00FF00FF);
-    PERMUTE(r, l, 1, 0x55555555);
-    
-    // Decryption
-
-    ROUND(l, r.v, subkeys3, 15);
-    ROUND(r, l.v, subkeys3, 14);
-    ROUND(l, r.v, subkeys3, 13);
-    ROUND(r, l.v, subkeys3, 12);
-    ROUND(l, r.v, subkeys3, 11);
-    ROUND(r, l.v, subkeys3, 10);
-    ROUND(l, r.v, subkeys3, 9);
-    ROUND(r, l.v, subkeys3, 8);
-    ROUND(l, r.v, subkeys3, 7);
-    ROUND(r, l.v, subkeys3, 6);
-    ROUND(l, r.v, subkeys3, 5);
-    ROUND(r, l.v, subkeys3, 4);
-    ROUND(l, r.v, subkeys3, 3);
-    ROUND(r, l.v, subkeys3, 2);
-    ROUND(l, r.v, subkeys3, 1);
-    ROUND(r, l.v, subkeys3, 0);
-
-    if (cipherScheme == 0) {
-      ROUND(r, l.v, subkeys2, 0);
-      ROUND(l, r.v, subkeys2, 1);
-      ROUND(r, l.v, subkeys2, 2);
-      ROUND(l, r.v, subkeys2, 3);
-      ROUND(r, l.v, subkeys2, 4);
-      ROUND(l, r.v, subkeys2, 5);
-      ROUND(r, l.v, subkeys2, 6);
-      ROUND(l, r.v, subkeys2, 7);
-      ROUND(r, l.v, subkeys2, 8);
-      ROUND(l, r.v, subkeys2, 9);
-      ROUND(r, l.v, subkeys2, 10);
-      ROUND(l, r.v, subkeys2, 11);
-      ROUND(r, l.v, subkeys2, 12);
-      ROUND(l, r.v, subkeys2, 13);
-      ROUND(r, l.v, subkeys2, 14);
-      ROUND(l, r.v, subkeys2, 15);
+  private static void FinalPermutation(long lr, byte[] dst, int to) {
+    int l = (int)(lr >>> 32);
+    int r = (int)lr;
+    int t;
+
+    t = ((r >>> 1) ^ l) & 0x55555555;  l ^= t;  r ^= t << 1;
+    t = ((l >>> 8) ^ r) & 0x00FF00FF;  r ^= t;  l ^= t << 8;
+    t = ((l >>> 2) ^ r) & 0x33333333;  r ^= t;  l ^= t << 2;
+    t = ((l << 16) ^ r) & 0xFFFF0000;  r ^= t;  l ^= t >>> 16;
+    t = ((r >>> 4) ^ l) & 0x0F0F0F0F;  l ^= t;  r ^= t << 4;
+
+    IntAsBytes(l, dst, to);
+    IntAsBytes(r, dst, to + 4);
+  }
+
+  // Sixteen rounds over (a << 32 | b), a is updated first; subkeys in forward order
+  private static long EncryptRounds(long ab, int[][] subkeys) {
+    final int[] k0 = subkeys[0], k1 = subkeys[1];
+    int a = (int)(ab >>> 32);
+    int b = (int)ab;
+    for (int i = 0; i < DES_ROUNDS; i += 2) {
+      a ^= F(b, k0[i], k1[i]);
+      b ^= F(a, k0[i + 1], k1[i + 1]);
     }
-    else {
-      ROUND(r, l.v, subkeys2, 15);
-      ROUND(l, r.v, subkeys2, 14);
-      ROUND(r, l.v, subkeys2, 13);
-      ROUND(l, r.v, subkeys2, 12);
-      ROUND(r, l.v, subkeys2, 11);
-      ROUND(l, r.v, subkeys2, 10);
-      ROUND(r, l.v, subkeys2, 9);
-      ROUND(l, r.v, subkeys2, 8);
-      ROUND(r, l.v, subkeys2, 7);
-      ROUND(l, r.v, subkeys2, 6);
-      ROUND(r, l.v, subkeys2, 5);
-      ROUND(l, r.v, subkeys2, 4);
-      ROUND(r, l.v, subkeys2, 3);
-      ROUND(l, r.v, subkeys2, 2);
-      ROUND(r, l.v, subkeys2, 1);
-      ROUND(l, r.v, subkeys2, 0);
+    return Pack(a, b);
+  }
+
+  // Same as above with subkeys in reverse order
+  private static long DecryptRounds(long ab, int[][] subkeys) {
+    final int[] k0 = subkeys[0], k1 = subkeys[1];
+    int a = (int)(ab >>> 32);
+    int b = (int)ab;
+    for (int i = DES_ROUNDS - 1; i > 0; i -= 2) {
+      a ^= F(b, k0[i], k1[i]);
+      b ^= F(a, k0[i - 1], k1[i - 1]);
     }
+    return Pack(a, b);
+  }
+
+  static void DesEncryptBlock(int[][] subkeys, byte[] dst, int to, byte[] src, int from) {
+    FinalPermutation(EncryptRounds(InitialPermutation(src, from), subkeys), dst, to);
+  }
 
-    ROUND(l, r.v, subkeys1, 15);
-    ROUND(r, l.v, subkeys1, 14);
-    ROUND(l, r.v, subkeys1, 13);
-    ROUND(r, l.v, subkeys1, 12);
-    ROUND(l, r.v, subkeys1, 11);
-    ROUND(r, l.v, subkeys1, 10);
-    ROUND(l, r.v, subkeys1, 9);
-    ROUND(r, l.v, subkeys1, 8);
-    ROUND(l, r.v, subkeys1, 7);
-    ROUND(r, l.v, subkeys1, 6);
-    ROUND(l, r.v, subkeys1, 5);
-    ROUND(r, l.v, subkeys1, 4);
-    ROUND(l, r.v, subkeys1, 3);
-    ROUND(r, l.v, subkeys1, 2);
-    ROUND(l, r.v, subkeys1, 1);
-    ROUND(r, l.v, subkeys1, 0);
-
-    // Final permutation
-
-    PERMUTE(l, r, 1, 0x55555555);
-    PERMUTE(r, l, 8, 0x00FF00FF);
-    PERMUTE(r, l, 2, 0x33333333);
-    PERMUTE(r, l, -16, 0xFFFF0000);
-    PERMUTE(l, r, 4, 0x0F0F0F0F);
-
-    block[0] = l.v;
-    block[1] = r.v;
-    ToBytes(dst, to, block, 0, 8);
+  static void DesDecryptBlock(int[][] subkeys, byte[] dst, int to, byte[] src, int from) {
+    FinalPermutation(DecryptRounds(InitialPermutation(src, from), subkeys), dst, to);
+  }
+
+  // The three passes share one initial and one final permutation; the middle pass starts
+  // with the right half, which is the same as running it on the swapped halves.
+
+  void Des3EncryptBlock(int[][] subkeys1, int[][] subkeys2, int[][] subkeys3, byte[] dst, int to, byte[] src, int from) {
+    long lr = EncryptRounds(InitialPermutation(src, from), subkeys1);
+    if (cipherScheme == 0)
+      lr = Swap(DecryptRounds(Swap(lr), subkeys2));
+    else
+      lr = Swap(EncryptRounds(Swap(lr), subkeys2));
+    FinalPermutation(EncryptRounds(lr, subkeys3), dst, to);
+  }
+
+  void Des3DecryptBlock(int[][] subkeys1, int[][] subkeys2, int[][] subkeys3, byte[] dst, int to, byte[] src, int from) {
+    long lr = DecryptRounds(InitialPermutation(src, from), subkeys3);
+    if (cipherScheme == 0)
+      lr = Swap(EncryptRounds(Swap(lr), subkeys2));
+    else
+      lr = Swap(DecryptRounds(Swap(lr), subkeys2));
+    FinalPermutation(DecryptRounds(lr, subkeys1), dst, to);
   }
 }
@@ -0,0 +1,137 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          FullKeyTwofish.java
+  Description:   https://www.kryptel.com/articles/developers/java/cipher.php
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.cipher;
+
+
+import static com.kryptel.bslx.Conversions.GetAsInt;
+import static com.kryptel.bslx.Conversions.IntAsBytes;
+
+
+//
+// Twofish with the "full keying" layout of the reference implementation: four separate
+// 256-entry key-dependent S-box/MDS tables, so each g function is four lookups.
+// Block words are kept in locals and the block functions do not allocate.
+//
+
+final class FullKeyTwofish extends Twofish {
+	FullKeyTwofish(long capabilities) {
+		super(capabilities);
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+  private int[] S0 = new int[256];
+  private int[] S1 = new int[256];
+  private int[] S2 = new int[256];
+  private int[] S3 = new int[256];
+
+  private void SplitTables() {
+    for (int i = 0; i < 256; i++) {
+      S0[i] = sBox[2 * i];
+      S1[i] = sBox[2 * i + 1];
+      S2[i] = sBox[512 + 2 * i];
+      S3[i] = sBox[512 + 2 * i + 1];
+    }
+  }
+
+
+  //
+  // The following functions define the cipher implementation
+  //
+
+  protected void ExpandKey() {
+    super.ExpandKey();
+    SplitTables();
+  }
+
+  protected void LoadKeySchedule(int[] schedule) {
+    super.LoadKeySchedule(schedule);
+    SplitTables();
+  }
+
+  protected void EncryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
+    final int[] s0 = S0, s1 = S1, s2 = S2, s3 = S3;
+    final int[] k = encrSubKeys;
+    int x0 = GetAsInt(src, from) ^ whiten[0];
+    int x1 = GetAsInt(src, from + 4) ^ whiten[1];
+    int x2 = GetAsInt(src, from + 8) ^ whiten[2];
+    int x3 = GetAsInt(src, from + 12) ^ whiten[3];
+    int t0, t1;
+
+    for (int r = 30; r > 0; r -= 4) {
+      t0 = s0[x0 & 0xFF] ^ s1[(x0 >>> 8) & 0xFF] ^ s2[(x0 >>> 16) & 0xFF] ^ s3[x0 >>> 24];
+      t1 = s0[x1 >>> 24] ^ s1[x1 & 0xFF] ^ s2[(x1 >>> 8) & 0xFF] ^ s3[(x1 >>> 16) & 0xFF];
+      x3 = (x3 << 1) | (x3 >>> 31);
+      x2 ^= t0 + t1 + k[r];
+      x3 ^= t0 + 2 * t1 + k[r + 1];
+      x2 = (x2 >>> 1) | (x2 << 31);
+
+      t0 = s0[x2 & 0xFF] ^ s1[(x2 >>> 8) & 0xFF] ^ s2[(x2 >>> 16) & 0xFF] ^ s3[x2 >>> 24];
+      t1 = s0[x3 >>> 24] ^ s1[x3 & 0xFF] ^ s2[(x3 >>> 8) & 0xFF] ^ s3[(x3 >>> 16) & 0xFF];
+      x1 = (x1 << 1) | (x1 >>> 31);
+      x0 ^= t0 + t1 + k[r - 2];
+      x1 ^= t0 + 2 * t1 + k[r - 1];
+      x0 = (x0 >>> 1) | (x0 << 31);
+    }
+
+    IntAsBytes(x2 ^ whiten[4], dst, to);
+    IntAsBytes(x3 ^ whiten[5], dst, to + 4);
+    IntAsBytes(x0 ^ whiten[6], dst, to + 8);
+    IntAsBytes(x1 ^ whiten[7], dst, to + 12);
+  }
+
+  protected void DecryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
+    final int[] s0 = S0, s1 = S1, s2 = S2, s3 = S3;
+    final int[] k = decrSubKeys;
+    int x2 = GetAsInt(src, from) ^ whiten[4];
+    int x3 = GetAsInt(src, from + 4) ^ whiten[5];
+    int x0 = GetAsInt(src, from + 8) ^ whiten[6];
+    int x1 = GetAsInt(src, from + 12) ^ whiten[7];
+    int t0, t1;
+
+    for (int r = 30; r > 0; r -= 4) {
+      t0 = s0[x2 & 0xFF] ^ s1[(x2 >>> 8) & 0xFF] ^ s2[(x2 >>> 16) & 0xFF] ^ s3[x2 >>> 24];
+      t1 = s0[x3 >>> 24] ^ s1[x3 & 0xFF] ^ s2[(x3 >>> 8) & 0xFF] ^ s3[(x3 >>> 16) & 0xFF];
+      x0 = (x0 << 1) | (x0 >>> 31);
+      x0 ^= t0 + t1 + k[r];
+      x1 ^= t0 + 2 * t1 + k[r + 1];
+      x1 = (x1 >>> 1) | (x1 << 31);
+
+      t0 = s0[x0 & 0xFF] ^ s1[(x0 >>> 8) & 0xFF] ^ s2[(x0 >>> 16) & 0xFF] ^ s3[x0 >>> 24];
+      t1 = s0[x1 >>> 24] ^ s1[x1 & 0xFF] ^ s2[(x1 >>> 8) & 0xFF] ^ s3[(x1 >>> 16) & 0xFF];
+      x2 = (x2 << 1) | (x2 >>> 31);
+      x2 ^= t0 + t1 + k[r - 2];
+      x3 ^= t0 + 2 * t1 + k[r - 1];
+      x3 = (x3 >>> 1) | (x3 << 31);
+    }
+
+    IntAsBytes(x0 ^ whiten[0], dst, to);
+    IntAsBytes(x1 ^ whiten[1], dst, to + 4);
+    IntAsBytes(x2 ^ whiten[2], dst, to + 8);
+    IntAsBytes(x3 ^ whiten[3], dst, to + 12);
+  }
+}
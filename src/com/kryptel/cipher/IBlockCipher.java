@@ -24,9 +24,18 @@
 package com.kryptel.cipher;
 
 
+import com.kryptel.Message;
+
+
 public interface IBlockCipher {
 	void Init() throws Exception;
 	void Encrypt(byte[] buf, int start, int size) throws Exception;
 	void Decrypt(byte[] buf, int start, int size) throws Exception;
 	void Done() throws Exception;
+
+	// CTR mode only: position the key stream at the given block, counting from the first block after Init.
+	// Ciphers that can not seek throw InvalidArg.
+	default void Seek(long blockIndex) throws Exception {
+		throw new Exception(Message.Get(Message.Code.InvalidArg));
+	}
 }
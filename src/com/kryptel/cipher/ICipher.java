@@ -24,6 +24,9 @@
 package com.kryptel.cipher;
 
 
+import java.nio.ByteBuffer;
+
+import com.kryptel.Constants;
 import com.kryptel.IDataSink;
 
 
@@ -31,5 +34,40 @@ public interface ICipher {
 	void Init(IDataSink callback, Object arg) throws Exception;
 	void Encrypt(byte[] src, int start, int size) throws Exception;
 	void Decrypt(byte[] src, int start, int size) throws Exception;
+
+	// Same as Encrypt/Decrypt, but the data may be transformed in the caller's buffer, whose contents are undefined on return
+	default void EncryptInPlace(byte[] buf, int start, int size) throws Exception { Encrypt(buf, start, size); }
+	default void DecryptInPlace(byte[] buf, int start, int size) throws Exception { Decrypt(buf, start, size); }
+
+	// Process the remaining bytes of src and advance its position to the limit. Ciphers that only work with arrays
+	// get the backing array, or consecutive heap copies of a direct buffer.
+	default void Encrypt(ByteBuffer src) throws Exception {
+		if (src.hasArray()) {
+			Encrypt(src.array(), src.arrayOffset() + src.position(), src.remaining());
+			src.position(src.limit());
+		}
+		else {
+			byte[] chunk = new byte [Math.min(src.remaining(), Constants.DEFAULT_BUFFER_SIZE)];
+			while (src.hasRemaining()) {
+				int len = Math.min(src.remaining(), chunk.length);
+				src.get(chunk, 0, len);
+				Encrypt(chunk, 0, len);
+			}
+		}
+	}
+	default void Decrypt(ByteBuffer src) throws Exception {
+		if (src.hasArray()) {
+			Decrypt(src.array(), src.arrayOffset() + src.position(), src.remaining());
+			src.position(src.limit());
+		}
+		else {
+			byte[] chunk = new byte [Math.min(src.remaining(), Constants.DEFAULT_BUFFER_SIZE)];
+			while (src.hasRemaining()) {
+				int len = Math.min(src.remaining(), chunk.length);
+				src.get(chunk, 0, len);
+				Decrypt(chunk, 0, len);
+			}
+		}
+	}
 	void Done() throws Exception;
 }
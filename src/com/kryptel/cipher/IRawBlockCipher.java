@@ -24,9 +24,26 @@
 package com.kryptel.cipher;
 
 
+import com.kryptel.Message;
+
+
 //IRawBlockCipher implementations must allow in-place processing when dst and src point to the same memory area
 
 public interface IRawBlockCipher {
 	void EncryptBlock(byte[] dst, int to, byte[] src, int from) throws Exception;
 	void DecryptBlock(byte[] dst, int to, byte[] src, int from) throws Exception;
+
+	// Process nBlocks consecutive blocks in one call (ECB). The defaults loop over EncryptBlock/DecryptBlock, taking
+	// the block size from IBlockCipherParams, which cipher components implement along with this interface;
+	// other implementations must override them to process more than one block per call.
+	default void EncryptBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) throws Exception {
+		if (nBlocks > 1 && !(this instanceof IBlockCipherParams)) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		int blockSize = (nBlocks > 1) ? ((IBlockCipherParams)this).GetBlockSize() : 0;
+		for (int i = 0; i < nBlocks; i++, to += blockSize, from += blockSize) EncryptBlock(dst, to, src, from);
+	}
+	default void DecryptBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) throws Exception {
+		if (nBlocks > 1 && !(this instanceof IBlockCipherParams)) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		int blockSize = (nBlocks > 1) ? ((IBlockCipherParams)this).GetBlockSize() : 0;
+		for (int i = 0; i < nBlocks; i++, to += blockSize, from += blockSize) DecryptBlock(dst, to, src, from);
+	}
 }
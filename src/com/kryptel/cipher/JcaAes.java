@@ -0,0 +1,137 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          JcaAes.java
+  Description:   https://www.kryptel.com/articles/developers/java/cipher.php
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.cipher;
+
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+
+//
+// AES component passing bulk block transforms to the platform's "AES/ECB/NoPadding" cipher,
+// which the JVM maps to the CPU AES instructions where available.
+// Chaining, counters, and stream format stay in BlockCipherBase, so the output is identical to Aes.
+// Non-standard parameters (24 or 32-byte blocks, extra rounds) and single blocks use the table code.
+//
+
+final class JcaAes extends Aes {
+	JcaAes(long capabilities) {
+		super(capabilities);
+	}
+
+	static boolean IsAvailable() {
+		if (jcaAvailable == null) {
+			try {
+				Cipher.getInstance(JCA_TRANSFORMATION);
+				jcaAvailable = Cipher.getMaxAllowedKeyLength("AES") >= 256;
+			}
+			catch (GeneralSecurityException e) {
+				jcaAvailable = false;
+			}
+		}
+		return jcaAvailable;
+	}
+
+
+	//
+	// IKryptelComponent
+	//
+
+	public void DiscardComponent() {
+		DropJcaCiphers();
+		jcaUsable = false;
+		super.DiscardComponent();
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+  private static final String JCA_TRANSFORMATION = "AES/ECB/NoPadding";
+  private static final int JCA_MIN_BLOCKS = 4;		// Shorter requests are faster with the table code
+  private static Boolean jcaAvailable;
+
+  private boolean jcaUsable;			// false if the parameters are not standard AES
+
+  // javax.crypto.Cipher is not thread-safe; parallel workers borrow their own instances.
+  // The provider keeps its own copy of the expanded key, which can't be wiped, so no key object is kept
+  // here, and the initialized ciphers are dropped as soon as the key changes or the component is discarded.
+  private final ConcurrentLinkedQueue<Cipher> encryptors = new ConcurrentLinkedQueue<Cipher>();
+  private final ConcurrentLinkedQueue<Cipher> decryptors = new ConcurrentLinkedQueue<Cipher>();
+
+  private boolean Transform(ConcurrentLinkedQueue<Cipher> pool, int mode, byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    Cipher cipher = pool.poll();
+    try {
+      if (cipher == null) {
+        cipher = Cipher.getInstance(JCA_TRANSFORMATION);
+        cipher.init(mode, new SecretKeySpec(cipherKey, 0, cipherKeySize, "AES"));
+      }
+      cipher.update(src, from, nBlocks * 16, dst, to);
+    }
+    catch (GeneralSecurityException e) {
+      return false;			// Nothing has been written, the caller falls back to the table code
+    }
+    pool.offer(cipher);
+    return true;
+  }
+
+  private void SetupJcaKey() {
+    DropJcaCiphers();
+    jcaUsable = cipherBlockSize == 16 && cipherRounds == cipherKeySize / 4 + 6;
+  }
+
+  private void DropJcaCiphers() {
+    encryptors.clear();
+    decryptors.clear();
+  }
+
+
+  //
+  // The following functions define the cipher implementation
+  //
+
+  protected void ExpandKey() {
+    super.ExpandKey();
+    SetupJcaKey();
+  }
+
+  protected void LoadKeySchedule(int[] schedule) {
+    super.LoadKeySchedule(schedule);
+    SetupJcaKey();
+  }
+
+  protected void EncryptBasicBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    if (!jcaUsable || nBlocks < JCA_MIN_BLOCKS || !Transform(encryptors, Cipher.ENCRYPT_MODE, dst, to, src, from, nBlocks))
+      super.EncryptBasicBlocks(dst, to, src, from, nBlocks);
+  }
+
+  protected void DecryptBasicBlocks(byte[] dst, int to, byte[] src, int from, int nBlocks) {
+    if (!jcaUsable || nBlocks < JCA_MIN_BLOCKS || !Transform(decryptors, Cipher.DECRYPT_MODE, dst, to, src, from, nBlocks))
+      super.DecryptBasicBlocks(dst, to, src, from, nBlocks);
+  }
+}
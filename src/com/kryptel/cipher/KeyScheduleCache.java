@@ -0,0 +1,103 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          KeyScheduleCache.java
+  Description:   https://www.kryptel.com/articles/developers/java/cipher.adding_cipher.php
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.cipher;
+
+
+import static com.kryptel.bslx.Conversions.IntAsBytes;
+import static com.kryptel.bslx.Conversions.UuidToBytes;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+//
+// Process-wide LRU cache of expanded keys, shared by all block cipher instances.
+// Entries are identified by an HMAC-SHA256 of the cipher ID, the cipher parameters, and the key,
+// keyed by a random salt generated once per process, so tags can't be matched against a precomputed
+// key digest. Entries are zeroed when evicted or replaced. Callers always receive a private copy.
+// The cache is used only by ciphers created with CAP_KEY_SCHEDULE_CACHE, which is not in the default mask.
+//
+
+final class KeyScheduleCache {
+	static final int MAX_ENTRIES = 64;
+
+	static ByteBuffer Tag(UUID cid, int keySize, int blockSize, int rounds, byte scheme, byte[] key) throws Exception {
+		byte[] params = new byte [16 + 3 * 4 + 1];
+		UuidToBytes(params, 0, cid);
+		IntAsBytes(keySize, params, 16);
+		IntAsBytes(blockSize, params, 20);
+		IntAsBytes(rounds, params, 24);
+		params[28] = scheme;
+
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(tagKey);
+		mac.update(params);
+		mac.update(key);
+		return ByteBuffer.wrap(mac.doFinal());
+	}
+
+	static synchronized int[] Get(ByteBuffer tag) {
+		int[] schedule = cache.get(tag);
+		return (schedule != null) ? schedule.clone() : null;
+	}
+
+	static synchronized void Put(ByteBuffer tag, int[] schedule) {
+		int[] old = cache.put(tag, schedule.clone());
+		if (old != null) Arrays.fill(old, 0);
+	}
+
+	static synchronized void Clear() {
+		for (int[] schedule: cache.values()) Arrays.fill(schedule, 0);
+		cache.clear();
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+	private static final SecretKeySpec tagKey = NewTagKey();
+
+	private static SecretKeySpec NewTagKey() {
+		byte[] salt = new byte [32];
+		new SecureRandom().nextBytes(salt);
+		return new SecretKeySpec(salt, "HmacSHA256");
+	}
+
+	@SuppressWarnings("serial")
+	private static final LinkedHashMap<ByteBuffer, int[]> cache = new LinkedHashMap<ByteBuffer, int[]>(MAX_ENTRIES, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<ByteBuffer, int[]> eldest) {
+			if (size() <= MAX_ENTRIES) return false;
+			Arrays.fill(eldest.getValue(), 0);
+			return true;
+		}
+	};
+}
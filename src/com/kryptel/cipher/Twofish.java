@@ -31,7 +31,7 @@ import static com.kryptel.bslx.Conversions.ToBytes;
 import java.util.UUID;
 
 
-final class Twofish extends BlockCipherBase {
+class Twofish extends BlockCipherBase {
 	Twofish(long capabilities) {
 		super(capabilities);
 
@@ -278,11 +278,11 @@ final class Twofish extends BlockCipherBase {
   private static final int SK_BUMP = 0x01010101;
   private static final int SK_ROTL = 9;
 
-  private int[] whiten = new int[2 * BLOCK_SIZE / 4];
-  private int[] encrSubKeys = new int[2 * MAX_ROUNDS];
-  private int[] decrSubKeys = new int[2 * MAX_ROUNDS];
+  protected int[] whiten = new int[2 * BLOCK_SIZE / 4];
+  protected int[] encrSubKeys = new int[2 * MAX_ROUNDS];
+  protected int[] decrSubKeys = new int[2 * MAX_ROUNDS];
   private int[] sbk = new int[MAX_KEY_SIZE / 8];
-  private int[] sBox = new int[1024];
+  protected int[] sBox = new int[1024];			// Key-dependent S-boxes combined with MDS, the four tables are interleaved
 
   private static int ROL(int x, int n) {
     return (x << n) | (x >>> (32 - n));
@@ -514,6 +514,24 @@ final class Twofish extends BlockCipherBase {
     }
   }
 
+  protected int[] SaveKeySchedule() {
+    int[] schedule = new int[whiten.length + encrSubKeys.length + decrSubKeys.length + sBox.length];
+    int pos = 0;
+    for (int[] part: new int[][] { whiten, encrSubKeys, decrSubKeys, sBox }) {
+      System.arraycopy(part, 0, schedule, pos, part.length);
+      pos += part.length;
+    }
+    return schedule;
+  }
+
+  protected void LoadKeySchedule(int[] schedule) {
+    int pos = 0;
+    for (int[] part: new int[][] { whiten, encrSubKeys, decrSubKeys, sBox }) {
+      System.arraycopy(schedule, pos, part, 0, part.length);
+      pos += part.length;
+    }
+  }
+
   protected void EncryptBasicBlock(byte[] dst, int to, byte[] src, int from) {
     int t0, t1;
     int[] x = new int[BLOCK_SIZE / 4];
@@ -23,25 +23,39 @@
 package com.kryptel.compressor;
 
 
+import java.util.Arrays;
+
 import com.kryptel.IDataSink;
-import com.kryptel.bslx.SmartBuffer;
+import com.kryptel.Message;
+
 
+//
+// The result is collected in a single array, which grows as needed. Its size is projected
+// from the output/input ratio observed so far, so the array is rarely reallocated more than
+// once or twice; the result is trimmed with one final copy if the estimate was not exact.
+//
 
 final class BlockCompressor implements IMemoryBlockCompressor {
 	BlockCompressor(ICompressor compr) { assert(compr != null); streamCompressor = compr; }
 	
 	public byte[] CompressBlock(final byte[] src, int start, int size) throws Exception {
-		streamCompressor.Init(new DataSink(), null);
-		streamCompressor.Compress(src, start, size);
-		streamCompressor.Done();
-		return smartBuffer.Merge();
+		Process(src, start, size, true, new byte [Capacity(size / 2)], 0, false);
+		return TakeResult();
 	}
 	
 	public byte[] DecompressBlock(final byte[] src, int start, int size) throws Exception {
-		streamCompressor.Init(new DataSink(), null);
-		streamCompressor.Decompress(src, start, size);
-		streamCompressor.Done();
-		return smartBuffer.Merge();
+		Process(src, start, size, false, new byte [Capacity(2L * size)], 0, false);
+		return TakeResult();
+	}
+	
+	public int CompressBlock(final byte[] src, int start, int size, byte[] dst, int dstStart) throws Exception {
+		Process(src, start, size, true, dst, dstStart, true);
+		return TakeSize(dstStart);
+	}
+	
+	public int DecompressBlock(final byte[] src, int start, int size, byte[] dst, int dstStart) throws Exception {
+		Process(src, start, size, false, dst, dstStart, true);
+		return TakeSize(dstStart);
 	}
 
 	public byte[] CompressUtf8String(final String str) throws Exception {
@@ -64,12 +78,99 @@ final class BlockCompressor implements IMemoryBlockCompressor {
 		return new String(byteSeq, 0, byteSeq.length, "UnicodeLittleUnmarked");
 	}
 	
+	
+  //
+  // Private data and methods
+  //
+	
+	private static final int MIN_CAPACITY = 256;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+	private static final int FEED_SIZE = 64 * 1024;		// Input is fed in slices to observe the compression ratio
+	
 	private ICompressor streamCompressor;
-	private SmartBuffer smartBuffer = new SmartBuffer();
+	
+	private byte[] outBuf;
+	private int outSize;
+	private boolean fixedOutput;		// Caller's buffer, may not grow
+	private boolean overflow;
+	private long inTotal, inFed;
+	
+	private void Process(final byte[] src, int start, int size, boolean compress, byte[] dst, int dstStart, boolean fixed) throws Exception {
+		if (dstStart < 0 || dstStart > dst.length) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		outBuf = dst;
+		outSize = dstStart;
+		fixedOutput = fixed;
+		overflow = false;
+		inTotal = size;
+		inFed = 0;
+		
+		try {
+			streamCompressor.Init(new DataSink(), null);
+			do {
+				int len = Math.min(size, FEED_SIZE);
+				inFed += len;
+				if (compress)
+					streamCompressor.Compress(src, start, len);
+				else
+					streamCompressor.Decompress(src, start, len);
+				start += len;
+				size -= len;
+			} while (size > 0);
+			streamCompressor.Done();
+		}
+		catch (Exception e) {
+			outBuf = null;
+			throw e;
+		}
+		
+		if (overflow) {
+			outBuf = null;
+			throw new Exception(Message.Get(Message.Code.InvalidArg));
+		}
+	}
+	
+	private byte[] TakeResult() {
+		byte[] res = (outSize == outBuf.length) ? outBuf : Arrays.copyOf(outBuf, outSize);
+		outBuf = null;
+		return res;
+	}
+	
+	private int TakeSize(int dstStart) {
+		outBuf = null;
+		return outSize - dstStart;
+	}
+	
+	private static int Capacity(long estimate) {
+		return (int)Math.min(estimate + MIN_CAPACITY, MAX_CAPACITY);
+	}
+	
+	private void Grow(long required) throws Exception {
+		long capacity = outBuf.length + outBuf.length / 2;
+		if (inFed > 0) {
+			long projected = outSize * inTotal / inFed;
+			capacity = Math.max(capacity, projected + projected / 8);
+		}
+		capacity = Math.min(Math.max(capacity, required), MAX_CAPACITY);
+		if (capacity < required) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		outBuf = Arrays.copyOf(outBuf, (int)capacity);
+	}
 	
 	private class DataSink implements IDataSink {
-		public void Init(Object arg) { smartBuffer.Empty(); }
-		public void PutData(byte[] buf, int start, int bufsize) { smartBuffer.Store(buf, start, bufsize); }
+		public void Init(Object arg) { }
+		
+		public void PutData(byte[] buf, int start, int bufsize) throws Exception {
+			if (overflow) return;
+			if (bufsize > outBuf.length - outSize) {
+				if (fixedOutput) {
+					overflow = true;		// Let the compressor finish so that it is left in idle state
+					return;
+				}
+				Grow((long)outSize + bufsize);
+			}
+			System.arraycopy(buf, start, outBuf, outSize, bufsize);
+			outSize += bufsize;
+		}
+		
 		public void Done() { }
 	}
 }
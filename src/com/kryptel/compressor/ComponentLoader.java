@@ -24,6 +24,7 @@
 package com.kryptel.compressor;
 
 
+import static com.kryptel.Guids.CID_COMPRESSOR_LZ4;
 import static com.kryptel.Guids.CID_COMPRESSOR_ZIP;
 import static com.kryptel.Guids.CID_NULL_COMPRESSOR;
 
@@ -36,6 +37,7 @@ import com.kryptel.IKryptelComponent;
 public final class ComponentLoader {
 	public static IKryptelComponent CreateComponent(UUID cid, long capabilities) {
 		if (cid.equals(CID_COMPRESSOR_ZIP)) return new Zip(capabilities);
+		if (cid.equals(CID_COMPRESSOR_LZ4)) return new Lz4(capabilities);
 		if (cid.equals(CID_NULL_COMPRESSOR)) return new NullCompressor(capabilities);
 		
 		return null;
@@ -44,6 +46,7 @@ public final class ComponentLoader {
 	
 	public static void GetComponentList(List<UUID> uidList, long mask) {
 		if ((Zip.componentType & mask) != 0) uidList.add(Zip.componentID);
+		if ((Lz4.componentType & mask) != 0) uidList.add(Lz4.componentID);
 		if ((NullCompressor.componentType & mask) != 0) uidList.add(NullCompressor.componentID);
 	}
 }
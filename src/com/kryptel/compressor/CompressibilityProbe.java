@@ -0,0 +1,96 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          CompressibilityProbe.java
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+
+package com.kryptel.compressor;
+
+
+import static com.kryptel.Constants.CT_DEFAULT_COMPRESSION;
+import static com.kryptel.Constants.CT_MIN_COMPRESSION;
+import static com.kryptel.Constants.CT_NO_COMPRESSION;
+
+import java.util.zip.Deflater;
+
+
+//
+// Estimates whether a stream is worth compressing from a sample of its first bytes.
+// Low byte entropy means the data is compressible and the requested level is kept. Otherwise
+// the sample is deflated at the fastest level: data that does not shrink is stored, data that
+// shrinks only a little is compressed at the fastest level.
+//
+
+public final class CompressibilityProbe {
+	public static final int SAMPLE_SIZE = 64 * 1024;		// Bytes worth sampling; longer samples are truncated
+	public static final int MIN_SAMPLE_SIZE = 4 * 1024;		// Shorter samples are too small to judge, the level is kept
+
+	// Returns the compression level to be used for a stream starting with the sample
+	public static byte ChooseLevel(byte[] sample, int start, int size, byte level) {
+		if (level == CT_NO_COMPRESSION || size < MIN_SAMPLE_SIZE) return level;
+		size = Math.min(size, SAMPLE_SIZE);
+		
+		if (Entropy(sample, start, size) < ENTROPY_THRESHOLD) return level;
+		
+		double ratio = TrialRatio(sample, start, size);
+		if (ratio >= STORE_RATIO) return CT_NO_COMPRESSION;
+		if (ratio >= FAST_RATIO) return (level == CT_DEFAULT_COMPRESSION) ? CT_MIN_COMPRESSION : (byte)Math.min(level, CT_MIN_COMPRESSION);
+		return level;
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+	private static final double ENTROPY_THRESHOLD = 7.0;		// Bits per byte; text and most documents are well below
+	private static final double STORE_RATIO = 0.98;				// Compressed / original size of the sample
+	private static final double FAST_RATIO = 0.90;
+
+	private static double Entropy(byte[] data, int start, int size) {
+		int[] counts = new int [256];
+		for (int i = start; i < start + size; i++) counts[data[i] & 0xFF]++;
+		
+		double entropy = 0;
+		for (int c: counts) {
+			if (c != 0) {
+				double p = (double)c / size;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return entropy / Math.log(2);
+	}
+
+	private static double TrialRatio(byte[] data, int start, int size) {
+		Deflater zipper = ZlibPool.BorrowDeflater(CT_MIN_COMPRESSION, true);
+		try {
+			zipper.setInput(data, start, size);
+			zipper.finish();
+			byte[] output = new byte [size];
+			int outSize = 0;
+			while (!zipper.finished() && outSize < output.length)
+				outSize += zipper.deflate(output, outSize, output.length - outSize);
+			return zipper.finished() ? (double)outSize / size : 1.0;
+		}
+		finally {
+			ZlibPool.Return(zipper, CT_MIN_COMPRESSION, true);
+		}
+	}
+}
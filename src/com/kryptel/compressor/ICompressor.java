@@ -24,6 +24,9 @@
 package com.kryptel.compressor;
 
 
+import java.nio.ByteBuffer;
+
+import com.kryptel.Constants;
 import com.kryptel.IDataSink;
 
 
@@ -31,5 +34,36 @@ public interface ICompressor {
 	void Init(IDataSink callback, Object arg) throws Exception;
 	void Compress(byte[] src, int start, int size) throws Exception;
 	void Decompress(byte[] src, int start, int size) throws Exception;
+
+	// Process the remaining bytes of src and advance its position to the limit. Compressors that only work with arrays
+	// get the backing array, or consecutive heap copies of a direct buffer.
+	default void Compress(ByteBuffer src) throws Exception {
+		if (src.hasArray()) {
+			Compress(src.array(), src.arrayOffset() + src.position(), src.remaining());
+			src.position(src.limit());
+		}
+		else {
+			byte[] chunk = new byte [Math.min(src.remaining(), Constants.DEFAULT_BUFFER_SIZE)];
+			while (src.hasRemaining()) {
+				int len = Math.min(src.remaining(), chunk.length);
+				src.get(chunk, 0, len);
+				Compress(chunk, 0, len);
+			}
+		}
+	}
+	default void Decompress(ByteBuffer src) throws Exception {
+		if (src.hasArray()) {
+			Decompress(src.array(), src.arrayOffset() + src.position(), src.remaining());
+			src.position(src.limit());
+		}
+		else {
+			byte[] chunk = new byte [Math.min(src.remaining(), Constants.DEFAULT_BUFFER_SIZE)];
+			while (src.hasRemaining()) {
+				int len = Math.min(src.remaining(), chunk.length);
+				src.get(chunk, 0, len);
+				Decompress(chunk, 0, len);
+			}
+		}
+	}
 	void Done() throws Exception;
 }
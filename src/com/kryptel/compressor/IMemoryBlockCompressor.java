@@ -24,10 +24,28 @@
 package com.kryptel.compressor;
 
 
+import com.kryptel.Message;
+
+
 public interface IMemoryBlockCompressor {
 	byte[] CompressBlock(final byte[] src, int start, int size) throws Exception;
 	byte[] DecompressBlock(final byte[] src, int start, int size) throws Exception;
 
+	// Same as above, but store the result at dst[dstStart] and return its size; InvalidArg is thrown if it does not fit
+	// The defaults copy the result of the allocating methods
+	default int CompressBlock(final byte[] src, int start, int size, byte[] dst, int dstStart) throws Exception {
+		byte[] res = CompressBlock(src, start, size);
+		if (res.length > dst.length - dstStart) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		System.arraycopy(res, 0, dst, dstStart, res.length);
+		return res.length;
+	}
+	default int DecompressBlock(final byte[] src, int start, int size, byte[] dst, int dstStart) throws Exception {
+		byte[] res = DecompressBlock(src, start, size);
+		if (res.length > dst.length - dstStart) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		System.arraycopy(res, 0, dst, dstStart, res.length);
+		return res.length;
+	}
+
 	byte[] CompressUtf8String(final String str) throws Exception;
 	String DecompressUtf8String(final byte[] src, int start, int size) throws Exception;
 
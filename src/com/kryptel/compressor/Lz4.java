@@ -0,0 +1,502 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          Lz4.java
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+
+package com.kryptel.compressor;
+
+
+import static com.kryptel.Constants.*;
+import static com.kryptel.Guids.*;
+import static com.kryptel.bslx.Conversions.GetAsInt;
+import static com.kryptel.bslx.Conversions.IntAsBytes;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import com.kryptel.IComponentState;
+import com.kryptel.IDataSink;
+import com.kryptel.IKryptelComponent;
+import com.kryptel.Message;
+
+
+//
+// LZ4 compressor producing standard LZ4 frames (as written by the lz4 command line tool) made of
+// independent 64K blocks. Level 0 stores the data in uncompressed blocks, any other level selects
+// the fast compressor. Any LZ4 frame can be decompressed, including linked blocks, checksums, and
+// skippable frames; frames with a preset dictionary ID are rejected.
+// The component ID is outside the reserved Kryptel range, so containers and parcels compressed with LZ4
+// can be read by this library only.
+//
+
+final class Lz4 implements IKryptelComponent, IComponentState {
+	Lz4(long capabilities) {
+		compCapabilities = capabilities;
+	}
+	
+	
+	//
+	// IKryptelComponent
+	//
+	
+	public long ComponentType() { return componentType; }
+	public UUID ComponentID() { return componentID; }
+	public String ComponentName() { return "LZ4"; }
+	
+	public Object GetInterface(UUID iid) {
+		if (iid.equals(IID_IKryptelComponent) || iid.equals(IID_IComponentState)) return this;
+
+		if (iid.equals(IID_ICompressorParams)) {
+			if (compressorParams == null) compressorParams = new Lz4Params();
+			return compressorParams;
+		}
+
+		if (iid.equals(IID_ICompressor)) {
+			if (streamCompressor == null) streamCompressor = new Lz4Compressor();
+			return streamCompressor;
+		}
+		
+		if (iid.equals(IID_IMemoryBlockCompressor)) {
+			if (streamCompressor == null) streamCompressor = new Lz4Compressor();
+			if (blockCompressor == null) blockCompressor = new BlockCompressor(streamCompressor);
+			return blockCompressor;
+		}
+
+		return null;
+	}
+	
+	public void DiscardComponent() { Reset(); }
+	
+	
+	//
+	// IComponentState
+	//
+
+	public ComponentState GetState() { return (currentState == State.Idle) ? ComponentState.ComponentIdle : ComponentState.ComponentBusy; }
+
+	public void Reset() {
+		if (currentState != State.Idle) {
+			assert (streamCompressor != null);
+			streamCompressor.Reset();
+			currentState = State.Idle;
+		}
+	}
+
+	public IKryptelComponent Clone() {
+		Lz4 myclone = new Lz4(compCapabilities);
+		myclone.compressionLevel = compressionLevel;
+		return myclone;
+	}
+	
+	
+	//
+	// AutoCloseable
+	//
+
+	public void close() throws Exception { DiscardComponent(); }
+
+	
+	//
+	// ICompressorParams
+	//
+	
+  private class Lz4Params implements ICompressorParams {
+  	public byte GetLevel() { return compressionLevel; }
+  	public byte GetScheme() { return 1; }
+  	
+  	public void SetLevel(byte level) throws Exception {
+  		if (level == CT_DEFAULT_COMPRESSION)
+  			compressionLevel = CT_AVERAGE_COMPRESSION;
+  		else if (level >= CT_NO_COMPRESSION && level <= CT_MAX_COMPRESSION)
+  			compressionLevel = level;
+  		else
+  			throw new Exception(Message.Get(Message.Code.InvalidArg));
+  	}
+
+  	public void SetScheme(byte scheme) throws Exception {
+  		if (scheme != DEFAULT_VALUE && scheme != 1) throw new Exception(Message.Get(Message.Code.InvalidArg));
+  	}
+  	
+  	public CompressorInfo GetInfo() {
+  		return info;
+  	}
+  }
+
+	
+	//
+	// ICompressor
+	//
+	
+  private class Lz4Compressor implements ICompressor {
+  	private IDataSink dataSink;
+  	private Object sinkArg;
+  	
+  	
+  	public void Init(IDataSink callback, Object arg) throws Exception {
+  		if (currentState != State.Idle) throw new Exception(Message.Get(Message.Code.InvalidState));
+  		if (callback == null) throw new Exception(Message.Get(Message.Code.InvalidArg));
+  		currentState = State.FirstOp;
+  		dataSink = callback;
+  		sinkArg = arg;
+  		dataSink.Init(sinkArg);
+  	}
+  	
+  	
+  	public void Compress(byte[] src, int start, int size) throws Exception {
+  		StartCompression();
+  		while (size > 0) {
+  			if (inSize == 0 && size >= BLOCK_SIZE) {		// Whole blocks are compressed right from the caller's buffer
+  				WriteBlock(src, start, BLOCK_SIZE);
+  				start += BLOCK_SIZE;
+  				size -= BLOCK_SIZE;
+  				continue;
+  			}
+  			
+  			int len = Math.min(size, BLOCK_SIZE - inSize);
+  			System.arraycopy(src, start, inBlock, inSize, len);
+  			inSize += len;
+  			start += len;
+  			size -= len;
+  			
+  			if (inSize == BLOCK_SIZE) {
+  				WriteBlock(inBlock, 0, BLOCK_SIZE);
+  				inSize = 0;
+  			}
+  		}
+  	}
+  	
+  	
+  	public void Decompress(byte[] src, int start, int size) throws Exception {
+  		StartDecompression();
+  		Parse(src, start, size);
+  	}
+  	
+  	
+  	public void Compress(ByteBuffer src) throws Exception {
+  		if (src.hasArray()) {
+  			Compress(src.array(), src.arrayOffset() + src.position(), src.remaining());
+  			src.position(src.limit());
+  			return;
+  		}
+  		
+  		StartCompression();
+  		while (src.hasRemaining()) {
+  			int len = Math.min(src.remaining(), BLOCK_SIZE - inSize);
+  			src.get(inBlock, inSize, len);
+  			inSize += len;
+  			
+  			if (inSize == BLOCK_SIZE) {
+  				WriteBlock(inBlock, 0, BLOCK_SIZE);
+  				inSize = 0;
+  			}
+  		}
+  	}
+  	
+  	
+  	public void Decompress(ByteBuffer src) throws Exception {
+  		if (src.hasArray()) {
+  			Decompress(src.array(), src.arrayOffset() + src.position(), src.remaining());
+  			src.position(src.limit());
+  			return;
+  		}
+  		
+  		StartDecompression();
+  		byte[] buf = new byte [Math.min(src.remaining(), DEFAULT_BUFFER_SIZE)];
+  		while (src.hasRemaining()) {
+  			int len = Math.min(src.remaining(), buf.length);
+  			src.get(buf, 0, len);
+  			Parse(buf, 0, len);
+  		}
+  	}
+ 	
+  	
+  	public void Done() throws Exception {
+   		if (currentState == State.Compressing) {
+   			if (inSize > 0) WriteBlock(inBlock, 0, inSize);
+   			inSize = 0;
+   			byte[] endMark = new byte [4];
+   			dataSink.PutData(endMark, 0, endMark.length);
+   		}
+
+   		else if (currentState == State.Decompressing) {
+   			if (parseState != ParseState.Magic || stageSize != 0) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+   		}
+
+   		else if (currentState != State.FirstOp)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+   		
+   		dataSink.Done();
+   		currentState = State.Idle;
+  	}
+  	
+  	
+  	void Reset() {
+  		inSize = 0;
+  		parseState = ParseState.Magic;
+  		need = 4;
+  		stageSize = 0;
+  	}
+  	
+  	
+  	private void StartCompression() throws Exception {
+  		if (currentState == State.FirstOp) {
+  			currentState = State.Compressing;
+  			if (inBlock == null) {
+  				inBlock = new byte [BLOCK_SIZE];
+  				outBlock = new byte [4 + Lz4Codec.MaxCompressedSize(BLOCK_SIZE)];
+  				hashTable = new int [1 << Lz4Codec.HASH_LOG];
+  			}
+  			inSize = 0;
+  			
+  			byte[] header = new byte [] { 0, 0, 0, 0, FLG_VERSION | FLG_BLOCK_INDEPENDENCE, BLOCK_SIZE_ID << 4, 0 };
+  			IntAsBytes(FRAME_MAGIC, header, 0);
+  			header[6] = (byte)(Lz4Codec.XxHash32(header, 4, 2, 0) >>> 8);
+  			dataSink.PutData(header, 0, header.length);
+  		}
+  		else if (currentState != State.Compressing)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+  	}
+  	
+  	
+  	private void StartDecompression() throws Exception {
+   		if (currentState == State.FirstOp) {
+  			currentState = State.Decompressing;
+  			Reset();
+  		}
+  		else if (currentState != State.Decompressing)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+  	}
+  	
+  	
+  	private void WriteBlock(byte[] src, int start, int size) throws Exception {
+  		int n = (compressionLevel != CT_NO_COMPRESSION) ? Lz4Codec.Compress(src, start, size, outBlock, 4, hashTable) : size;
+  		if (n < size)
+  			IntAsBytes(n, outBlock, 0);
+  		else {
+  			n = size;
+  			IntAsBytes(size | UNCOMPRESSED_BLOCK, outBlock, 0);
+  			System.arraycopy(src, start, outBlock, 4, size);
+  		}
+  		dataSink.PutData(outBlock, 0, 4 + n);
+  	}
+  }
+  
+  
+  //
+  // Frame parser
+  //
+  
+  private enum ParseState { Magic, Descriptor, DescriptorRest, BlockSize, BlockData, ContentChecksum, SkipSize, Skip };
+  
+  private ParseState parseState = ParseState.Magic;
+  private int need = 4;							// Bytes needed to complete the current item
+  private byte[] stage = new byte [16];		// Collects an item split between calls
+  private int stageSize = 0;
+  private long skipLeft;
+  
+  private byte[] descriptor = new byte [15];
+  private boolean blockChecksums, contentChecksum, independentBlocks;
+  private int blockMaxSize;
+  private int blockSize;
+  private boolean blockUncompressed;
+  private Lz4Codec.XxHash32 contentHash;
+  private byte[] window;
+  private int windowPos;
+  
+  
+  private void Parse(byte[] src, int start, int size) throws Exception {
+  	while (size > 0) {
+  		if (parseState == ParseState.Skip) {
+  			int len = (int)Math.min(size, skipLeft);
+  			skipLeft -= len;
+  			start += len;
+  			size -= len;
+  			if (skipLeft == 0) Expect(ParseState.Magic, 4);
+  			continue;
+  		}
+  		
+  		byte[] data;
+  		int pos;
+  		if (stageSize == 0 && size >= need) {		// The item can be processed in place
+  			data = src;
+  			pos = start;
+  			start += need;
+  			size -= need;
+  		}
+  		else {
+  			int len = Math.min(size, need - stageSize);
+  			System.arraycopy(src, start, stage, stageSize, len);
+  			stageSize += len;
+  			start += len;
+  			size -= len;
+  			if (stageSize < need) return;
+  			data = stage;
+  			pos = 0;
+  		}
+  		stageSize = 0;
+  		ProcessItem(data, pos);
+  	}
+  }
+  
+  
+  private void ProcessItem(byte[] data, int pos) throws Exception {
+  	switch (parseState) {
+  		case Magic:
+  			int magic = GetAsInt(data, pos);
+  			if (magic == FRAME_MAGIC)
+  				Expect(ParseState.Descriptor, 2);
+  			else if ((magic & 0xFFFFFFF0) == SKIPPABLE_MAGIC)
+  				Expect(ParseState.SkipSize, 4);
+  			else
+  				throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+  			break;
+  			
+  		case Descriptor:
+  			int flg = data[pos] & 0xFF;
+  			int bd = data[pos + 1] & 0xFF;
+  			int blockSizeId = (bd >>> 4) & 7;
+  			if ((flg & 0xC2) != FLG_VERSION || (flg & FLG_DICTIONARY_ID) != 0 || (bd & 0x8F) != 0 || blockSizeId < 4)
+  				throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+  			
+  			independentBlocks = (flg & FLG_BLOCK_INDEPENDENCE) != 0;
+  			blockChecksums = (flg & FLG_BLOCK_CHECKSUM) != 0;
+  			contentChecksum = (flg & FLG_CONTENT_CHECKSUM) != 0;
+  			blockMaxSize = 1 << (2 * blockSizeId + 8);
+  			
+  			descriptor[0] = (byte)flg;
+  			descriptor[1] = (byte)bd;
+  			Expect(ParseState.DescriptorRest, (((flg & FLG_CONTENT_SIZE) != 0) ? 8 : 0) + 1);
+  			break;
+  			
+  		case DescriptorRest:
+  			System.arraycopy(data, pos, descriptor, 2, need);
+  			if ((byte)(Lz4Codec.XxHash32(descriptor, 0, need + 1, 0) >>> 8) != descriptor[need + 1])
+  				throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+  			
+  			int windowSize = independentBlocks ? blockMaxSize : Lz4Codec.WINDOW_SIZE + blockMaxSize;
+  			if (window == null || window.length < windowSize) window = new byte [windowSize];
+  			if (stage.length < blockMaxSize + 4) stage = new byte [blockMaxSize + 4];
+  			windowPos = 0;
+  			contentHash = contentChecksum ? new Lz4Codec.XxHash32(0) : null;
+  			Expect(ParseState.BlockSize, 4);
+  			break;
+  			
+  		case BlockSize:
+  			int bs = GetAsInt(data, pos);
+  			if (bs == 0)		// End mark
+  				Expect(contentChecksum ? ParseState.ContentChecksum : ParseState.Magic, 4);
+  			else {
+  				blockUncompressed = (bs & UNCOMPRESSED_BLOCK) != 0;
+  				blockSize = bs & ~UNCOMPRESSED_BLOCK;
+  				if (blockSize > blockMaxSize) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+  				Expect(ParseState.BlockData, blockSize + (blockChecksums ? 4 : 0));
+  			}
+  			break;
+  			
+  		case BlockData:
+  			if (blockChecksums && Lz4Codec.XxHash32(data, pos, blockSize, 0) != GetAsInt(data, pos + blockSize))
+  				throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+  			
+  			if (independentBlocks)
+  				windowPos = 0;
+  			else if (windowPos + blockMaxSize > window.length) {		// Keep the last 64K as the history for the next block
+  				int keep = Math.min(windowPos, Lz4Codec.WINDOW_SIZE);
+  				System.arraycopy(window, windowPos - keep, window, 0, keep);
+  				windowPos = keep;
+  			}
+  			
+  			int end;
+  			if (blockUncompressed) {
+  				System.arraycopy(data, pos, window, windowPos, blockSize);
+  				end = windowPos + blockSize;
+  			}
+  			else
+  				end = Lz4Codec.Decompress(data, pos, blockSize, window, windowPos, windowPos + blockMaxSize, 0);
+  			
+  			if (contentHash != null) contentHash.Update(window, windowPos, end - windowPos);
+  			streamCompressor.dataSink.PutData(window, windowPos, end - windowPos);
+  			windowPos = end;
+  			Expect(ParseState.BlockSize, 4);
+  			break;
+  			
+  		case ContentChecksum:
+  			if (contentHash.Digest() != GetAsInt(data, pos)) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+  			Expect(ParseState.Magic, 4);
+  			break;
+  			
+  		case SkipSize:
+  			skipLeft = GetAsInt(data, pos) & 0xFFFFFFFFL;
+  			if (skipLeft == 0)
+  				Expect(ParseState.Magic, 4);
+  			else
+  				Expect(ParseState.Skip, 0);
+  			break;
+  			
+  		default:
+  			assert (false);
+  	}
+  }
+  
+  
+  private void Expect(ParseState state, int size) {
+  	parseState = state;
+  	need = size;
+  }
+	
+	
+  //
+  // Private data and methods
+  //
+
+  static long componentType = TYPE_COMPRESSOR;
+  static UUID componentID = CID_COMPRESSOR_LZ4;
+  
+  private static final int FRAME_MAGIC = 0x184D2204;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50;		// Low four bits are free
+  
+  private static final int FLG_VERSION = 0x40;
+  private static final int FLG_BLOCK_INDEPENDENCE = 0x20;
+  private static final int FLG_BLOCK_CHECKSUM = 0x10;
+  private static final int FLG_CONTENT_SIZE = 0x08;
+  private static final int FLG_CONTENT_CHECKSUM = 0x04;
+  private static final int FLG_DICTIONARY_ID = 0x01;
+  
+  private static final int BLOCK_SIZE_ID = 4;			// 64K
+  private static final int BLOCK_SIZE = 64 * 1024;
+  private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+	
+	private long compCapabilities;
+	private byte compressionLevel = CT_AVERAGE_COMPRESSION;
+	
+	private enum State { Idle, FirstOp, Compressing, Decompressing };
+	private State currentState = State.Idle;
+	
+	private Lz4Params compressorParams;
+	private Lz4Compressor streamCompressor;
+	private BlockCompressor blockCompressor;
+	
+	private byte[] inBlock;				// Compression buffers, allocated on first use
+	private int inSize;
+	private byte[] outBlock;
+	private int[] hashTable;
+	
+	private static CompressorInfo info = new CompressorInfo(new String[] { "LZ4 frame" });
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          Lz4Codec.java
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+
+package com.kryptel.compressor;
+
+
+import static com.kryptel.bslx.Conversions.GetAsInt;
+import static com.kryptel.bslx.Conversions.GetAsLong;
+
+import java.util.Arrays;
+
+import com.kryptel.Message;
+
+
+//
+// LZ4 block format codec and the xxHash32 checksum used by the LZ4 frame format.
+// The compressor is the single-pass greedy parser of the reference implementation
+// with a 4K-entry hash table and accelerated skipping over incompressible data.
+//
+
+final class Lz4Codec {
+	static final int MIN_MATCH = 4;
+	static final int MAX_OFFSET = 65535;
+	static final int WINDOW_SIZE = 64 * 1024;		// Linked blocks may refer this far back
+
+	static final int HASH_LOG = 12;
+
+	static int MaxCompressedSize(int size) {
+		return size + size / 255 + 16;
+	}
+
+	// Compresses src into dst, which must hold MaxCompressedSize(srcSize) bytes; hashTable must hold 1 << HASH_LOG entries.
+	// Returns the compressed size.
+	static int Compress(byte[] src, int srcStart, int srcSize, byte[] dst, int dstStart, int[] hashTable) {
+		int srcEnd = srcStart + srcSize;
+		int matchLimit = srcEnd - LAST_LITERALS;
+		int mfLimit = srcEnd - MF_LIMIT;
+		int ip = srcStart, anchor = srcStart;
+		int op = dstStart;
+
+		if (srcSize >= MIN_INPUT_SIZE) {
+			Arrays.fill(hashTable, srcStart);
+			ip++;
+
+			search:
+			for (;;) {
+				// Find the next match
+				int ref;
+				int step = 1;
+				int attempts = 1 << SKIP_TRIGGER;
+				int nextIp = ip;
+				do {
+					ip = nextIp;
+					nextIp += step;
+					step = attempts++ >>> SKIP_TRIGGER;
+					if (nextIp > mfLimit) break search;
+					int h = Hash(GetAsInt(src, ip));
+					ref = hashTable[h];
+					hashTable[h] = ip;
+				} while (ip - ref > MAX_OFFSET || GetAsInt(src, ref) != GetAsInt(src, ip));
+
+				// Extend it backwards
+				while (ip > anchor && ref > srcStart && src[ip - 1] == src[ref - 1]) {
+					ip--;
+					ref--;
+				}
+
+				int token = op++;
+				op = PutLiterals(src, anchor, ip - anchor, dst, token, op);
+
+				for (;;) {
+					dst[op++] = (byte)(ip - ref);
+					dst[op++] = (byte)((ip - ref) >>> 8);
+
+					int matchLen = CommonBytes(src, ip + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+					ip += MIN_MATCH + matchLen;
+					op = PutLength(matchLen, dst, token, op, 0);
+					anchor = ip;
+
+					if (ip > mfLimit) break search;
+
+					hashTable[Hash(GetAsInt(src, ip - 2))] = ip - 2;
+
+					// A match right at the current position goes without literals
+					int h = Hash(GetAsInt(src, ip));
+					ref = hashTable[h];
+					hashTable[h] = ip;
+					if (ip - ref > MAX_OFFSET || GetAsInt(src, ref) != GetAsInt(src, ip)) break;
+
+					token = op++;
+					dst[token] = 0;
+				}
+				ip++;
+			}
+		}
+
+		int token = op++;
+		return PutLiterals(src, anchor, srcEnd - anchor, dst, token, op) - dstStart;
+	}
+
+	// Decompresses a block to dst[dstStart], which may not grow beyond dstLimit.
+	// Matches may refer back down to dst[dictStart]. Returns the end of the decompressed data.
+	static int Decompress(byte[] src, int srcStart, int srcSize, byte[] dst, int dstStart, int dstLimit, int dictStart) throws Exception {
+		int srcEnd = srcStart + srcSize;
+		int ip = srcStart;
+		int op = dstStart;
+
+		for (;;) {
+			if (ip >= srcEnd) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+			int token = src[ip++] & 0xFF;
+
+			int litLen = token >>> 4;
+			if (litLen == 15) {
+				int b;
+				do {
+					if (ip >= srcEnd || litLen > dstLimit) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+					b = src[ip++] & 0xFF;
+					litLen += b;
+				} while (b == 255);
+			}
+			if (litLen > srcEnd - ip || litLen > dstLimit - op) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+			System.arraycopy(src, ip, dst, op, litLen);
+			ip += litLen;
+			op += litLen;
+
+			if (ip == srcEnd) return op;		// The last sequence has no match
+
+			if (srcEnd - ip < 2) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+			int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+			ip += 2;
+			if (offset == 0 || offset > op - dictStart) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+
+			int matchLen = token & 15;
+			if (matchLen == 15) {
+				int b;
+				do {
+					if (ip >= srcEnd || matchLen > dstLimit) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+					b = src[ip++] & 0xFF;
+					matchLen += b;
+				} while (b == 255);
+			}
+			matchLen += MIN_MATCH;
+			if (matchLen > dstLimit - op) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));
+
+			int ref = op - offset;
+			if (offset >= matchLen)
+				System.arraycopy(dst, ref, dst, op, matchLen);
+			else {
+				for (int i = 0; i < matchLen; i++) dst[op + i] = dst[ref + i];		// Overlapping copy repeats the pattern
+			}
+			op += matchLen;
+		}
+	}
+
+
+	//
+	// xxHash32
+	//
+
+	static int XxHash32(byte[] data, int start, int size, int seed) {
+		XxHash32 hash = new XxHash32(seed);
+		hash.Update(data, start, size);
+		return hash.Digest();
+	}
+
+	static final class XxHash32 {
+		XxHash32(int seed) {
+			v1 = seed + PRIME1 + PRIME2;
+			v2 = seed + PRIME2;
+			v3 = seed;
+			v4 = seed - PRIME1;
+			this.seed = seed;
+		}
+
+		void Update(byte[] data, int start, int size) {
+			totalSize += size;
+
+			if (memSize + size < 16) {
+				System.arraycopy(data, start, mem, memSize, size);
+				memSize += size;
+				return;
+			}
+
+			if (memSize > 0) {
+				int len = 16 - memSize;
+				System.arraycopy(data, start, mem, memSize, len);
+				Round(mem, 0);
+				start += len;
+				size -= len;
+				memSize = 0;
+			}
+
+			int end = start + size;
+			for ( ; start + 16 <= end; start += 16) Round(data, start);
+
+			memSize = end - start;
+			System.arraycopy(data, start, mem, 0, memSize);
+		}
+
+		int Digest() {
+			int h = (totalSize >= 16)
+					? Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18)
+					: seed + PRIME5;
+			h += (int)totalSize;
+
+			int i = 0;
+			for ( ; i + 4 <= memSize; i += 4) h = Integer.rotateLeft(h + GetAsInt(mem, i) * PRIME3, 17) * PRIME4;
+			for ( ; i < memSize; i++) h = Integer.rotateLeft(h + (mem[i] & 0xFF) * PRIME5, 11) * PRIME1;
+
+			h ^= h >>> 15;
+			h *= PRIME2;
+			h ^= h >>> 13;
+			h *= PRIME3;
+			h ^= h >>> 16;
+			return h;
+		}
+
+		private static final int PRIME1 = 0x9E3779B1;
+		private static final int PRIME2 = 0x85EBCA77;
+		private static final int PRIME3 = 0xC2B2AE3D;
+		private static final int PRIME4 = 0x27D4EB2F;
+		private static final int PRIME5 = 0x165667B1;
+
+		private int v1, v2, v3, v4;
+		private int seed;
+		private long totalSize = 0;
+		private byte[] mem = new byte [16];
+		private int memSize = 0;
+
+		private void Round(byte[] data, int start) {
+			v1 = Integer.rotateLeft(v1 + GetAsInt(data, start) * PRIME2, 13) * PRIME1;
+			v2 = Integer.rotateLeft(v2 + GetAsInt(data, start + 4) * PRIME2, 13) * PRIME1;
+			v3 = Integer.rotateLeft(v3 + GetAsInt(data, start + 8) * PRIME2, 13) * PRIME1;
+			v4 = Integer.rotateLeft(v4 + GetAsInt(data, start + 12) * PRIME2, 13) * PRIME1;
+		}
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+	private static final int LAST_LITERALS = 5;			// The last bytes of a block are always literals
+	private static final int MF_LIMIT = 12;					// No match may start closer to the end
+	private static final int MIN_INPUT_SIZE = MF_LIMIT + 1;
+	private static final int SKIP_TRIGGER = 6;			// Search step grows after 2^SKIP_TRIGGER misses
+
+	private static int Hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);		// 2654435761
+	}
+
+	// Number of equal bytes at a and b, a being the later position and stopping at limit
+	private static int CommonBytes(byte[] b, int a, int ref, int limit) {
+		int start = a;
+		while (a + 8 <= limit) {
+			long diff = GetAsLong(b, a) ^ GetAsLong(b, ref);
+			if (diff != 0) return a - start + (Long.numberOfTrailingZeros(diff) >>> 3);
+			a += 8;
+			ref += 8;
+		}
+		while (a < limit && b[a] == b[ref]) {
+			a++;
+			ref++;
+		}
+		return a - start;
+	}
+
+	// Stores a literal run, setting the token's high nibble; returns the new output position
+	private static int PutLiterals(byte[] src, int start, int len, byte[] dst, int token, int op) {
+		dst[token] = 0;
+		op = PutLength(len, dst, token, op, 4);
+		System.arraycopy(src, start, dst, op, len);
+		return op + len;
+	}
+
+	// Sets the token nibble at the given shift and stores any extra length bytes
+	private static int PutLength(int len, byte[] dst, int token, int op, int shift) {
+		if (len < 15) {
+			dst[token] |= (byte)(len << shift);
+			return op;
+		}
+		dst[token] |= (byte)(15 << shift);
+		for (len -= 15; len >= 255; len -= 255) dst[op++] = (byte)255;
+		dst[op++] = (byte)len;
+		return op;
+	}
+}
@@ -36,6 +36,7 @@ import static com.kryptel.Guids.IID_ICompressorParams;
 import static com.kryptel.Guids.IID_IKryptelComponent;
 import static com.kryptel.Guids.IID_IMemoryBlockCompressor;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import com.kryptel.IComponentState;
@@ -163,6 +164,26 @@ final class NullCompressor implements IKryptelComponent, IComponentState {
   		
   		dataSink.PutData(src, start, size);
   	}
+  	
+  	
+  	public void Compress(ByteBuffer src) throws Exception {
+  		if (currentState == State.FirstOp)
+  			currentState = State.Compressing;
+  		else if (currentState != State.Compressing)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+  		
+  		dataSink.PutData(src);
+  	}
+  	
+  	
+  	public void Decompress(ByteBuffer src) throws Exception {
+   		if (currentState == State.FirstOp)
+  			currentState = State.Decompressing;
+  		else if (currentState != State.Decompressing)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+  		
+  		dataSink.PutData(src);
+  	}
  	
   	
   	public void Done() throws Exception {
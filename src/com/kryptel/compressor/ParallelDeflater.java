@@ -0,0 +1,191 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          ParallelDeflater.java
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+
+package com.kryptel.compressor;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import com.kryptel.IDataSink;
+
+
+//
+// Parallel deflation in the manner of pigz. The input is cut into fixed-size chunks that are deflated
+// on the shared thread pool, each chunk primed with the last 32K of the previous one as a preset dictionary.
+// Chunks end with a sync flush, so their raw outputs concatenate into one ordinary zlib stream that any
+// Inflater decodes. The zlib header, the Adler-32 of the whole input, and the ordering of the chunk outputs
+// are handled on the calling thread, which is the only one talking to the data sink.
+//
+// A stream that fits in a single chunk is deflated on the calling thread exactly as the serial compressor does.
+//
+
+final class ParallelDeflater {
+	static final int CHUNK_SIZE = 128 * 1024;
+	static final int DICTIONARY_SIZE = 32 * 1024;		// Deflate window size
+
+	static boolean IsAvailable() {
+		return ForkJoinPool.getCommonPoolParallelism() > 1;
+	}
+
+	ParallelDeflater(int level, IDataSink dataSink) {
+		this.level = level;
+		this.dataSink = dataSink;
+		maxPending = 2 * ForkJoinPool.getCommonPoolParallelism();
+	}
+
+	void Write(byte[] src, int start, int size) throws Exception {
+		while (size > 0) {
+			if (chunkSize == CHUNK_SIZE) SubmitChunk(false);
+			int len = Math.min(size, CHUNK_SIZE - chunkSize);
+			System.arraycopy(src, start, chunk, chunkSize, len);
+			chunkSize += len;
+			start += len;
+			size -= len;
+		}
+	}
+
+	void Write(ByteBuffer src) throws Exception {
+		while (src.hasRemaining()) {
+			if (chunkSize == CHUNK_SIZE) SubmitChunk(false);
+			int len = Math.min(src.remaining(), CHUNK_SIZE - chunkSize);
+			src.get(chunk, chunkSize, len);
+			chunkSize += len;
+		}
+	}
+
+	// Writes out the rest of the stream
+	void Finish() throws Exception {
+		if (prevChunk == null) {
+			ChunkTask task = new ChunkTask(chunk, chunkSize, null, true, false);
+			task.compute();
+			dataSink.PutData(task.output, 0, task.outputSize);
+			return;
+		}
+
+		SubmitChunk(true);
+		while (!pending.isEmpty()) WriteChunk();
+
+		long checksum = adler.getValue();
+		byte[] trailer = new byte [] { (byte)(checksum >>> 24), (byte)(checksum >>> 16), (byte)(checksum >>> 8), (byte)checksum };
+		dataSink.PutData(trailer, 0, trailer.length);
+	}
+
+	// Drops the stream; chunks still being deflated complete in background and return their deflaters
+	void Abandon() {
+		pending.clear();
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+	private int level;
+	private IDataSink dataSink;
+	private int maxPending;			// Limits memory held by chunks waiting to be written
+
+	private byte[] chunk = new byte [CHUNK_SIZE];
+	private int chunkSize = 0;
+	private byte[] prevChunk = null;
+	private Adler32 adler = new Adler32();
+	private ArrayDeque<ChunkTask> pending = new ArrayDeque<ChunkTask>();
+
+	private void SubmitChunk(boolean last) throws Exception {
+		if (prevChunk == null) {
+			int header = (0x78 << 8) | (LevelFlags(level) << 6);
+			header += 31 - header % 31;
+			byte[] hdr = new byte [] { (byte)(header >>> 8), (byte)header };
+			dataSink.PutData(hdr, 0, hdr.length);
+		}
+
+		adler.update(chunk, 0, chunkSize);
+		if (pending.size() >= maxPending) WriteChunk();
+		ChunkTask task = new ChunkTask(chunk, chunkSize, prevChunk, last, true);
+		pending.addLast(task);
+		ForkJoinPool.commonPool().execute(task);
+
+		prevChunk = chunk;			// Still read by the task as its successor's dictionary, so a new array is needed
+		chunk = new byte [CHUNK_SIZE];
+		chunkSize = 0;
+	}
+
+	private void WriteChunk() throws Exception {
+		ChunkTask task = pending.removeFirst();
+		task.join();
+		dataSink.PutData(task.output, 0, task.outputSize);
+	}
+
+	// FLEVEL field of the zlib header, as set by zlib itself
+	private static int LevelFlags(int level) {
+		if (level < 2) return 0;
+		else if (level < 6) return 1;
+		else if (level == 6) return 2;
+		return 3;
+	}
+
+
+	@SuppressWarnings("serial")
+	private final class ChunkTask extends RecursiveAction {
+		private byte[] input;
+		private int inputSize;
+		private byte[] dictionary;		// Previous chunk, null for the first one
+		private boolean last;
+		private boolean nowrap;
+
+		byte[] output;
+		int outputSize = 0;
+
+		ChunkTask(byte[] input, int inputSize, byte[] dictionary, boolean last, boolean nowrap) {
+			this.input = input;
+			this.inputSize = inputSize;
+			this.dictionary = dictionary;
+			this.last = last;
+			this.nowrap = nowrap;
+		}
+
+		protected void compute() {
+			Deflater zipper = ZlibPool.BorrowDeflater(level, nowrap);
+			try {
+				if (dictionary != null) zipper.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+				zipper.setInput(input, 0, inputSize);
+				if (last) zipper.finish();
+
+				output = new byte [inputSize + inputSize / 8 + 64];
+				for (;;) {
+					outputSize += zipper.deflate(output, outputSize, output.length - outputSize, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+					if (last ? zipper.finished() : outputSize < output.length) break;
+					if (outputSize == output.length) output = Arrays.copyOf(output, 2 * output.length);
+				}
+			}
+			finally {
+				ZlibPool.Return(zipper, level, nowrap);
+			}
+		}
+	}
+}
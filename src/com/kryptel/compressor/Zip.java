@@ -23,10 +23,11 @@
 package com.kryptel.compressor;
 
 
-import static com.kryptel.Capabilities.CAP_DEFAULT_CAPABILITIES;
+import static com.kryptel.Capabilities.CAP_PARALLEL_COMPRESSION;
 import static com.kryptel.Constants.*;
 import static com.kryptel.Guids.*;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -38,7 +39,9 @@ import com.kryptel.Message;
 
 
 final class Zip implements IKryptelComponent, IComponentState {
-	Zip(long capabilities) { }
+	Zip(long capabilities) {
+		compCapabilities = capabilities;
+	}
 	
 	
 	//
@@ -89,8 +92,9 @@ final class Zip implements IKryptelComponent, IComponentState {
 	}
 
 	public IKryptelComponent Clone() {
-		Zip myclone = new Zip(CAP_DEFAULT_CAPABILITIES);
+		Zip myclone = new Zip(compCapabilities);
 		myclone.compressionLevel = compressionLevel;
+		myclone.compressionScheme = compressionScheme;
 		return myclone;
 	}
 	
@@ -108,7 +112,7 @@ final class Zip implements IKryptelComponent, IComponentState {
 	
   private class ZipParams implements ICompressorParams {
   	public byte GetLevel() { return compressionLevel; }
-  	public byte GetScheme() { return 1; }
+  	public byte GetScheme() { return compressionScheme; }
   	
   	public void SetLevel(byte level) throws Exception {
   		if (level == CT_DEFAULT_COMPRESSION)
@@ -120,7 +124,12 @@ final class Zip implements IKryptelComponent, IComponentState {
   	}
 
   	public void SetScheme(byte scheme) throws Exception {
-  		if (scheme != DEFAULT_VALUE && scheme != 1) throw new Exception(Message.Get(Message.Code.InvalidArg));
+  		if (scheme == DEFAULT_VALUE)
+  			compressionScheme = ZIP_SCHEME_DEFLATE;
+  		else if (scheme == ZIP_SCHEME_DEFLATE || scheme == ZIP_SCHEME_STORED_PASSTHROUGH)
+  			compressionScheme = scheme;
+  		else
+  			throw new Exception(Message.Get(Message.Code.InvalidArg));
   	}
   	
   	public CompressorInfo GetInfo() {
@@ -136,9 +145,13 @@ final class Zip implements IKryptelComponent, IComponentState {
   private class ZipCompressor implements ICompressor {
   	private IDataSink dataSink;
   	private Object sinkArg;
-  	private Deflater zipper;
+  	private Deflater zipper;				// Borrowed from ZlibPool for the duration of one operation
+  	private int zipperLevel;
   	private Inflater unzipper;
+  	private ParallelDeflater parallelZipper;		// Used instead of zipper for multi-threaded compression
+  	private boolean passThrough;						// Stored stream, the data goes to the sink as is
   	private byte[] buffer = new byte [DEFAULT_BUFFER_SIZE];
+  	private byte[] inputBuffer;							// Allocated on first direct buffer input, reused after that
   	
   	
   	public void Init(IDataSink callback, Object arg) throws Exception {
@@ -152,62 +165,122 @@ final class Zip implements IKryptelComponent, IComponentState {
   	
   	
   	public void Compress(byte[] src, int start, int size) throws Exception {
-  		if (currentState == State.FirstOp) {
-  			currentState = State.Compressing;
-  			if (zipper == null) zipper = new Deflater();
-  			zipper.setLevel(compressionLevel);
-  		}
-  		else if (currentState != State.Compressing)
-  			throw new Exception(Message.Get(Message.Code.InvalidState));
-  		
-  		assert(zipper.needsInput());
+  		StartCompression();
   		if (size == 0) return;
+  		if (passThrough) {
+  			dataSink.PutData(src, start, size);
+  			return;
+  		}
+  		if (parallelZipper != null) {
+  			parallelZipper.Write(src, start, size);
+  			return;
+  		}
   		zipper.setInput(src, start, size);
-  		
-  		do {
-   			int n = zipper.deflate(buffer, 0, buffer.length);
-  			if (n != 0) dataSink.PutData(buffer, 0, n);
-  		} while (!zipper.needsInput());
+  		DeflateInput();
   	}
   	
   	
   	public void Decompress(byte[] src, int start, int size) throws Exception {
-   		if (currentState == State.FirstOp) {
-  			currentState = State.Decompressing;
-  			if (unzipper == null) unzipper = new Inflater();
-  		}
-  		else if (currentState != State.Decompressing)
-  			throw new Exception(Message.Get(Message.Code.InvalidState));
-  		
-  		assert(unzipper.needsInput());
+  		StartDecompression();
   		if (size == 0) return;
+  		if (unzipper == null && !passThrough) {
+  			if (SelectDecompression(src[start])) {
+  				start++;
+  				size--;
+  			}
+  		}
+  		if (passThrough) {
+  			if (size > 0) dataSink.PutData(src, start, size);
+  			return;
+  		}
   		unzipper.setInput(src, start, size);
-  		
-   		do {
-   			int n = unzipper.inflate(buffer, 0, buffer.length);
-  			if (n != 0) dataSink.PutData(buffer, 0, n);
-   		} while (!unzipper.needsInput());
+  		InflateInput();
+  	}
+  	
+  	
+  	// Deflater and Inflater take byte arrays only (setInput(ByteBuffer) is Java 11), so heap buffers are passed
+  	// as their backing array, and direct buffers are copied through inputBuffer
+
+  	public void Compress(ByteBuffer src) throws Exception {
+  		StartCompression();
+  		if (!src.hasRemaining()) return;
+  		if (passThrough) {
+  			PassBuffer(src);
+  			return;
+  		}
+  		if (parallelZipper != null) {
+  			parallelZipper.Write(src);
+  			return;
+  		}
+  		if (src.hasArray()) {
+  			zipper.setInput(src.array(), src.arrayOffset() + src.position(), src.remaining());
+  			src.position(src.limit());
+  			DeflateInput();
+  			return;
+  		}
+  		byte[] input = InputBuffer();
+  		while (src.hasRemaining()) {
+  			int len = Math.min(src.remaining(), input.length);
+  			src.get(input, 0, len);
+  			zipper.setInput(input, 0, len);
+  			DeflateInput();
+  		}
+  	}
+  	
+  	
+  	public void Decompress(ByteBuffer src) throws Exception {
+  		StartDecompression();
+  		if (!src.hasRemaining()) return;
+  		if (unzipper == null && !passThrough) {
+  			if (SelectDecompression(src.get(src.position()))) src.get();
+  		}
+  		if (passThrough) {
+  			PassBuffer(src);
+  			return;
+  		}
+  		if (src.hasArray()) {
+  			unzipper.setInput(src.array(), src.arrayOffset() + src.position(), src.remaining());
+  			src.position(src.limit());
+  			InflateInput();
+  			return;
+  		}
+  		byte[] input = InputBuffer();
+  		while (src.hasRemaining()) {
+  			int len = Math.min(src.remaining(), input.length);
+  			src.get(input, 0, len);
+  			unzipper.setInput(input, 0, len);
+  			InflateInput();
+  		}
   	}
  	
   	
   	public void Done() throws Exception {
-   		if (currentState == State.Compressing) {
+   		if (passThrough)
+   			passThrough = false;		// Stored stream has no trailer
+   		
+   		else if (currentState == State.Compressing && parallelZipper != null) {
+   			parallelZipper.Finish();
+   			parallelZipper = null;
+   		}
+   		
+   		else if (currentState == State.Compressing) {
     		assert(zipper.needsInput());
   			zipper.finish();
     		while (!zipper.finished()) {
     			int n = zipper.deflate(buffer, 0, buffer.length);
     			if (n != 0) dataSink.PutData(buffer, 0, n);
     		}
-    		zipper.reset();
+    		ReturnStreams();
    		}
 
    		else if (currentState == State.Decompressing) {
+   			if (unzipper == null) throw new Exception(Message.Get(Message.Code.InvalidCompressedStream));		// Stream scheme tag has not arrived
 	  		assert(unzipper.needsInput());
 	  		while (!unzipper.finished()) {
 	  			int n = unzipper.inflate(buffer, 0, buffer.length);
 	  			if (n != 0) dataSink.PutData(buffer, 0, n);
 	  		}
-	  		unzipper.reset();
+	  		ReturnStreams();
    		}
 
    		else if (currentState != State.FirstOp)
@@ -219,8 +292,111 @@ final class Zip implements IKryptelComponent, IComponentState {
   	
   	
   	void Reset() {
-  		if (zipper != null) zipper.reset();
-  		if (unzipper != null) unzipper.reset();
+  		ReturnStreams();
+  		passThrough = false;
+  	}
+  	
+  	
+  	private void ReturnStreams() {
+  		if (parallelZipper != null) {
+  			parallelZipper.Abandon();
+  			parallelZipper = null;
+  		}
+  		if (zipper != null) {
+  			ZlibPool.Return(zipper, zipperLevel, false);
+  			zipper = null;
+  		}
+  		if (unzipper != null) {
+  			ZlibPool.Return(unzipper);
+  			unzipper = null;
+  		}
+  	}
+  	
+  	
+  	private void StartCompression() throws Exception {
+  		if (currentState == State.FirstOp) {
+  			currentState = State.Compressing;
+  			zipperLevel = compressionLevel;
+  			if (compressionScheme == ZIP_SCHEME_STORED_PASSTHROUGH && zipperLevel == CT_NO_COMPRESSION) {
+  				passThrough = true;
+  				buffer[0] = STORED_STREAM_TAG;
+  				dataSink.PutData(buffer, 0, 1);
+  				return;
+  			}
+  			if (UseParallel())
+  				parallelZipper = new ParallelDeflater(zipperLevel, dataSink);
+  			else
+  				zipper = ZlibPool.BorrowDeflater(zipperLevel, false);
+  		}
+  		else if (currentState != State.Compressing)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+  		
+  		assert(passThrough || parallelZipper != null || zipper.needsInput());
+  	}
+  	
+  	
+  	private boolean UseParallel() {
+  		return (compCapabilities & CAP_PARALLEL_COMPRESSION) != 0 && zipperLevel != CT_NO_COMPRESSION && ParallelDeflater.IsAvailable();
+  	}
+  	
+  	
+  	private void StartDecompression() throws Exception {
+   		if (currentState == State.FirstOp) {
+  			currentState = State.Decompressing;
+  			if (compressionScheme == ZIP_SCHEME_DEFLATE) unzipper = ZlibPool.BorrowInflater();		// Otherwise wait for the first byte
+  		}
+  		else if (currentState != State.Decompressing)
+  			throw new Exception(Message.Get(Message.Code.InvalidState));
+  		
+  		assert(unzipper == null || unzipper.needsInput());
+  	}
+  	
+  	
+  	// Stored pass-through scheme: a stream starting with the tag is stored as is, anything else is a zlib stream.
+  	// Returns true if the first byte is the tag and must be skipped.
+  	private boolean SelectDecompression(byte first) {
+  		if (first == STORED_STREAM_TAG) {
+  			passThrough = true;
+  			return true;
+  		}
+  		unzipper = ZlibPool.BorrowInflater();
+  		return false;
+  	}
+  	
+  	
+  	private void PassBuffer(ByteBuffer src) throws Exception {
+  		if (src.hasArray()) {
+  			dataSink.PutData(src.array(), src.arrayOffset() + src.position(), src.remaining());
+  			src.position(src.limit());
+  			return;
+  		}
+  		while (src.hasRemaining()) {
+  			int len = Math.min(src.remaining(), buffer.length);
+  			src.get(buffer, 0, len);
+  			dataSink.PutData(buffer, 0, len);
+  		}
+  	}
+  	
+  	
+  	private byte[] InputBuffer() {
+  		if (inputBuffer == null) inputBuffer = new byte [DEFAULT_BUFFER_SIZE];
+  		return inputBuffer;
+  	}
+  	
+  	
+  	private void DeflateInput() throws Exception {
+  		do {
+   			int n = zipper.deflate(buffer, 0, buffer.length);
+  			if (n != 0) dataSink.PutData(buffer, 0, n);
+  		} while (!zipper.needsInput());
+  	}
+  	
+  	
+  	private void InflateInput() throws Exception {
+   		do {
+   			int n = unzipper.inflate(buffer, 0, buffer.length);
+  			if (n != 0) dataSink.PutData(buffer, 0, n);
+   		} while (!unzipper.needsInput());
   	}
   }
 	
@@ -232,7 +408,12 @@ final class Zip implements IKryptelComponent, IComponentState {
   static long componentType = TYPE_COMPRESSOR;
   static UUID componentID = CID_COMPRESSOR_ZIP;
 	
+	private long compCapabilities;
+	
 	private byte compressionLevel = CT_AVERAGE_COMPRESSION;
+	private byte compressionScheme = ZIP_SCHEME_DEFLATE;
+	
+	private static final byte STORED_STREAM_TAG = 0;		// Never starts a zlib stream (compression method 0)
 	
 	private enum State { Idle, FirstOp, Compressing, Decompressing };
 	private State currentState = State.Idle;
@@ -241,5 +422,5 @@ final class Zip implements IKryptelComponent, IComponentState {
 	private ZipCompressor streamCompressor;
 	private BlockCompressor blockCompressor;
 	
-	private static CompressorInfo info = new CompressorInfo(new String[] { "Deflation" });
+	private static CompressorInfo info = new CompressorInfo(new String[] { "Deflation", "Deflation, stored pass-through" });
 }
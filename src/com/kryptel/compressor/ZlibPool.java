@@ -0,0 +1,100 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          ZlibPool.java
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+
+package com.kryptel.compressor;
+
+
+import static com.kryptel.Constants.CT_MAX_COMPRESSION;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+//
+// Process-wide pool of zlib streams shared by all ZIP components. Components borrow a stream
+// when compression or decompression starts and return it when done, so the native zlib memory
+// is reused instead of lingering until the garbage collector cleans up abandoned streams.
+// Streams beyond the pool limit are ended immediately. Raw deflaters (no zlib header and trailer)
+// are pooled separately for ParallelDeflater.
+//
+
+final class ZlibPool {
+	static final int MAX_POOLED = 8;			// Per compression level and kind, and for inflaters
+
+	static Deflater BorrowDeflater(int level, boolean nowrap) {
+		ArrayDeque<Deflater> pool = (nowrap ? rawDeflaters : deflaters)[level];
+		Deflater zipper;
+		synchronized (pool) {
+			zipper = pool.pollFirst();
+		}
+		return (zipper != null) ? zipper : new Deflater(level, nowrap);
+	}
+
+	static void Return(Deflater zipper, int level, boolean nowrap) {
+		zipper.reset();
+		ArrayDeque<Deflater> pool = (nowrap ? rawDeflaters : deflaters)[level];
+		synchronized (pool) {
+			if (pool.size() < MAX_POOLED) {
+				pool.addFirst(zipper);
+				return;
+			}
+		}
+		zipper.end();
+	}
+
+	static Inflater BorrowInflater() {
+		Inflater unzipper;
+		synchronized (inflaters) {
+			unzipper = inflaters.pollFirst();
+		}
+		return (unzipper != null) ? unzipper : new Inflater();
+	}
+
+	static void Return(Inflater unzipper) {
+		unzipper.reset();
+		synchronized (inflaters) {
+			if (inflaters.size() < MAX_POOLED) {
+				inflaters.addFirst(unzipper);
+				return;
+			}
+		}
+		unzipper.end();
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+	private static final ArrayDeque<Deflater>[] deflaters = NewDeflaterPools();
+	private static final ArrayDeque<Deflater>[] rawDeflaters = NewDeflaterPools();
+	private static final ArrayDeque<Inflater> inflaters = new ArrayDeque<Inflater>();
+
+	private static ArrayDeque<Deflater>[] NewDeflaterPools() {
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ArrayDeque<Deflater>[] pools = new ArrayDeque [CT_MAX_COMPRESSION + 1];
+		for (int i = 0; i < pools.length; i++) pools[i] = new ArrayDeque<Deflater>();
+		return pools;
+	}
+}
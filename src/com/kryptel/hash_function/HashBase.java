@@ -29,9 +29,11 @@ import static com.kryptel.Constants.TYPE_HASH_FUNCTION;
 import static com.kryptel.Guids.IID_IComponentState;
 import static com.kryptel.Guids.IID_IHashFunction;
 import static com.kryptel.Guids.IID_IHashFunctionParams;
+import static com.kryptel.Guids.IID_IHashMidstate;
 import static com.kryptel.Guids.IID_IKryptelComponent;
 import static com.kryptel.Guids.IID_IMemoryBlockHash;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import com.kryptel.IComponentState;
@@ -69,6 +71,11 @@ abstract class HashBase implements	IKryptelComponent,
 			if (blockHashFunction == null) blockHashFunction = new MemoryBlockHash();
 			return blockHashFunction;
 		}
+		
+		if (iid.equals(IID_IHashMidstate)) {
+			if (hashMidstate == null) hashMidstate = new HashMidstate();
+			return hashMidstate;
+		}
 
 		return null;
 	}
@@ -181,11 +188,22 @@ abstract class HashBase implements	IKryptelComponent,
 			if (len > 0) HashImpl(src, start, len);
 		}
 		
+		public void Hash(ByteBuffer src) throws Exception {
+			if (currentState != State.Hashing) throw new Exception(Message.Get(Message.Code.InvalidState));
+			if (src.hasRemaining()) HashImpl(src);
+		}
+		
 		public byte[] Done() throws Exception {
 			if (currentState != State.Hashing) throw new Exception(Message.Get(Message.Code.InvalidState));
 			currentState = State.Idle;
 			return DoneImpl();
 		}
+		
+		public void Done(byte[] dst, int start) throws Exception {
+			if (currentState != State.Hashing) throw new Exception(Message.Get(Message.Code.InvalidState));
+			currentState = State.Idle;
+			DoneImpl(dst, start);
+		}
 	}
 	
 	
@@ -201,6 +219,18 @@ abstract class HashBase implements	IKryptelComponent,
       return DoneImpl();
 		}
 		
+		public byte[][] HashBlocks(final byte[] src, int[] starts, int[] lengths) throws Exception {
+			if (currentState != State.Idle) throw new Exception(Message.Get(Message.Code.InvalidState));
+			if (starts.length != lengths.length) throw new Exception(Message.Get(Message.Code.InvalidArg));
+			byte[][] hashes = new byte [starts.length][];
+			for (int i = 0; i < starts.length; i++) {
+				InitImpl();
+				if (lengths[i] > 0) HashImpl(src, starts[i], lengths[i]);
+				hashes[i] = DoneImpl();
+			}
+			return hashes;
+		}
+		
 		public byte[] HashUtf8String(String str) throws Exception {
 			byte[] byteSeq = str.getBytes("UTF8");
 			return HashBlock(byteSeq, 0, byteSeq.length);
@@ -213,6 +243,35 @@ abstract class HashBase implements	IKryptelComponent,
 	}
 
 	
+	//
+	// IHashMidstate
+	//
+
+	private class HashMidstate implements IHashMidstate {
+		public Object SaveMidstate() throws Exception {
+			if (currentState != State.Hashing) throw new Exception(Message.Get(Message.Code.InvalidState));
+			currentState = State.Idle;
+			try {
+				return SaveMidstateImpl();
+			}
+			catch (CloneNotSupportedException e) {
+				return null;
+			}
+		}
+		
+		public void RestoreMidstate(Object midstate) throws Exception {
+			if (currentState != State.Idle) throw new Exception(Message.Get(Message.Code.InvalidState));
+			if (midstate == null) throw new Exception(Message.Get(Message.Code.InvalidArg));
+			RestoreMidstateImpl(midstate);
+			currentState = State.Hashing;
+		}
+		
+		public void DiscardMidstate(Object midstate) throws Exception {
+			if (midstate != null) DiscardMidstateImpl(midstate);
+		}
+	}
+
+	
   //
   // Private data and methods
   //
@@ -234,6 +293,7 @@ abstract class HashBase implements	IKryptelComponent,
 	
 	private HashFunction hashFunction;
 	private MemoryBlockHash blockHashFunction;
+	private HashMidstate hashMidstate;
 	
 	
 	//
@@ -242,5 +302,10 @@ abstract class HashBase implements	IKryptelComponent,
 	
   protected abstract void InitImpl();
   protected abstract void HashImpl(byte[] buffer, int start, int size);
+  protected abstract void HashImpl(ByteBuffer buffer);		// Must consume all remaining bytes
   protected abstract byte[] DoneImpl();
+  protected abstract void DoneImpl(byte[] dst, int start) throws Exception;
+  protected abstract Object SaveMidstateImpl() throws Exception;
+  protected abstract void RestoreMidstateImpl(Object midstate) throws Exception;
+  protected abstract void DiscardMidstateImpl(Object midstate) throws Exception;
 }
@@ -24,8 +24,37 @@
 package com.kryptel.hash_function;
 
 
+import java.nio.ByteBuffer;
+
+import com.kryptel.Constants;
+
+
 public interface IHashFunction {
 	void Init() throws Exception;
 	void Hash(byte[] src, int start, int len) throws Exception;
+
+	// Hashes the remaining bytes and advances the position to the limit. Hash functions that only work with arrays
+	// get the backing array, or consecutive heap copies of a direct buffer.
+	default void Hash(ByteBuffer src) throws Exception {
+		if (src.hasArray()) {
+			Hash(src.array(), src.arrayOffset() + src.position(), src.remaining());
+			src.position(src.limit());
+		}
+		else {
+			byte[] chunk = new byte [Math.min(src.remaining(), Constants.DEFAULT_BUFFER_SIZE)];
+			while (src.hasRemaining()) {
+				int len = Math.min(src.remaining(), chunk.length);
+				src.get(chunk, 0, len);
+				Hash(chunk, 0, len);
+			}
+		}
+	}
+
 	byte[] Done() throws Exception;
+
+	// Same as Done, but stores the hash at dst[start] instead of allocating it
+	default void Done(byte[] dst, int start) throws Exception {
+		byte[] hash = Done();
+		System.arraycopy(hash, 0, dst, start, hash.length);
+	}
 }
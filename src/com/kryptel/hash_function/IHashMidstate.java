@@ -0,0 +1,37 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          IHashMidstate.java
+  Description:   https://www.kryptel.com/articles/developers/java/hash.php
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.hash_function;
+
+
+//
+// Snapshots of a hash in progress. A snapshot taken after hashing a common prefix
+// (e.g. HMAC's key pad) can be restored any number of times instead of rehashing the prefix.
+// Snapshots may only be restored to the component that created them.
+//
+
+public interface IHashMidstate {
+	Object SaveMidstate() throws Exception;		// Like Done, but returns the internal state instead of the hash (null if the state can't be copied)
+	void RestoreMidstate(Object midstate) throws Exception;		// Like Init, but continues from the snapshot; the snapshot itself is not changed
+	void DiscardMidstate(Object midstate) throws Exception;		// Wipes a snapshot that is no longer needed
+}
@@ -24,8 +24,20 @@
 package com.kryptel.hash_function;
 
 
+import com.kryptel.Message;
+
+
 public interface IMemoryBlockHash {
 	byte[] HashBlock(final byte[] src, int start, int len) throws Exception;
+
+	// Hashes many small records in one call, one hash per record
+	default byte[][] HashBlocks(final byte[] src, int[] starts, int[] lengths) throws Exception {
+		if (starts.length != lengths.length) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		byte[][] hashes = new byte [starts.length][];
+		for (int i = 0; i < starts.length; i++) hashes[i] = HashBlock(src, starts[i], lengths[i]);
+		return hashes;
+	}
+
 	byte[] HashUtf8String(String str) throws Exception;
 	byte[] HashWideString(String str) throws Exception;
 }
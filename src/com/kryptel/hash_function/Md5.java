@@ -26,6 +26,7 @@ package com.kryptel.hash_function;
 
 import static com.kryptel.Guids.CID_HASH_MD5;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.UUID;
 
@@ -81,7 +82,27 @@ final class Md5 extends HashBase {
   	md5.update(buffer, start, size);
   }
   
+  protected void HashImpl(ByteBuffer buffer) {
+  	md5.update(buffer);
+  }
+  
   protected byte[] DoneImpl() {
   	return md5.digest();
   }
+  
+  protected void DoneImpl(byte[] dst, int start) throws Exception {
+  	md5.digest(dst, start, md5.getDigestLength());
+  }
+  
+  protected Object SaveMidstateImpl() throws Exception {
+  	return md5.clone();
+  }
+  
+  protected void RestoreMidstateImpl(Object midstate) throws Exception {
+  	md5 = (MessageDigest)((MessageDigest)midstate).clone();
+  }
+  
+  protected void DiscardMidstateImpl(Object midstate) {
+  	((MessageDigest)midstate).reset();
+  }
 }
@@ -28,6 +28,8 @@ import static com.kryptel.Constants.TYPE_HASH_FUNCTION;
 import static com.kryptel.Constants.TYPE_HIDDEN_COMPONENT;
 import static com.kryptel.Guids.CID_NULL_HASH_FUNCTION;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.UUID;
 
 
@@ -73,7 +75,21 @@ final class NullHashFunction extends HashBase {
   
   protected void HashImpl(byte[] buffer, int start, int size) { }
   
+  protected void HashImpl(ByteBuffer buffer) { buffer.position(buffer.limit()); }
+  
   protected byte[] DoneImpl() {
     return new byte [hashSize];
   }
+  
+  protected void DoneImpl(byte[] dst, int start) {
+    Arrays.fill(dst, start, start + hashSize, (byte)0);
+  }
+  
+  protected Object SaveMidstateImpl() {
+    return this;		// Nothing to save, any non-null object will do
+  }
+  
+  protected void RestoreMidstateImpl(Object midstate) { }
+  
+  protected void DiscardMidstateImpl(Object midstate) { }
 }
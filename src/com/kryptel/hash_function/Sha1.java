@@ -26,6 +26,7 @@ package com.kryptel.hash_function;
 
 import static com.kryptel.Guids.CID_HASH_SHA1;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.UUID;
 
@@ -81,7 +82,27 @@ final class Sha1 extends HashBase {
   	sha1.update(buffer, start, size);
   }
   
+  protected void HashImpl(ByteBuffer buffer) {
+  	sha1.update(buffer);
+  }
+  
   protected byte[] DoneImpl() {
   	return sha1.digest();
   }
+  
+  protected void DoneImpl(byte[] dst, int start) throws Exception {
+  	sha1.digest(dst, start, sha1.getDigestLength());
+  }
+  
+  protected Object SaveMidstateImpl() throws Exception {
+  	return sha1.clone();
+  }
+  
+  protected void RestoreMidstateImpl(Object midstate) throws Exception {
+  	sha1 = (MessageDigest)((MessageDigest)midstate).clone();
+  }
+  
+  protected void DiscardMidstateImpl(Object midstate) {
+  	((MessageDigest)midstate).reset();
+  }
 }
@@ -26,6 +26,7 @@ package com.kryptel.hash_function;
 
 import static com.kryptel.Guids.CID_HASH_SHA256;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.UUID;
 
@@ -81,7 +82,27 @@ final class Sha256 extends HashBase {
   	sha256.update(buffer, start, size);
   }
   
+  protected void HashImpl(ByteBuffer buffer) {
+  	sha256.update(buffer);
+  }
+  
   protected byte[] DoneImpl() {
   	return sha256.digest();
   }
+  
+  protected void DoneImpl(byte[] dst, int start) throws Exception {
+  	sha256.digest(dst, start, sha256.getDigestLength());
+  }
+  
+  protected Object SaveMidstateImpl() throws Exception {
+  	return sha256.clone();
+  }
+  
+  protected void RestoreMidstateImpl(Object midstate) throws Exception {
+  	sha256 = (MessageDigest)((MessageDigest)midstate).clone();
+  }
+  
+  protected void DiscardMidstateImpl(Object midstate) {
+  	((MessageDigest)midstate).reset();
+  }
 }
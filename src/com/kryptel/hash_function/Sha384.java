@@ -26,6 +26,7 @@ package com.kryptel.hash_function;
 
 import static com.kryptel.Guids.CID_HASH_SHA384;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.UUID;
 
@@ -88,7 +89,27 @@ final class Sha384 extends HashBase {
   	sha384.update(buffer, start, size);
   }
   
+  protected void HashImpl(ByteBuffer buffer) {
+  	sha384.update(buffer);
+  }
+  
   protected byte[] DoneImpl() {
   	return sha384.digest();
   }
+  
+  protected void DoneImpl(byte[] dst, int start) throws Exception {
+  	sha384.digest(dst, start, sha384.getDigestLength());
+  }
+  
+  protected Object SaveMidstateImpl() throws Exception {
+  	return sha384.clone();
+  }
+  
+  protected void RestoreMidstateImpl(Object midstate) throws Exception {
+  	sha384 = (MessageDigest)((MessageDigest)midstate).clone();
+  }
+  
+  protected void DiscardMidstateImpl(Object midstate) {
+  	((MessageDigest)midstate).reset();
+  }
 }
@@ -28,6 +28,7 @@ import static com.kryptel.Capabilities.CAP_DEFAULT_CAPABILITIES;
 import static com.kryptel.Guids.CID_HASH_SHA512;
 import static com.kryptel.Guids.CID_HASH_SHA512_64;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.UUID;
 
@@ -109,7 +110,27 @@ final class Sha512 extends HashBase {
   	sha512.update(buffer, start, size);
   }
   
+  protected void HashImpl(ByteBuffer buffer) {
+  	sha512.update(buffer);
+  }
+  
   protected byte[] DoneImpl() {
   	return sha512.digest();
   }
+  
+  protected void DoneImpl(byte[] dst, int start) throws Exception {
+  	sha512.digest(dst, start, sha512.getDigestLength());
+  }
+  
+  protected Object SaveMidstateImpl() throws Exception {
+  	return sha512.clone();
+  }
+  
+  protected void RestoreMidstateImpl(Object midstate) throws Exception {
+  	sha512 = (MessageDigest)((MessageDigest)midstate).clone();
+  }
+  
+  protected void DiscardMidstateImpl(Object midstate) {
+  	((MessageDigest)midstate).reset();
+  }
 }
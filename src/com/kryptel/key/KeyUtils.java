@@ -67,7 +67,7 @@ public final class KeyUtils {
 			hashFunc.Init();
 			hashFunc.Hash(filler, 0, i);
 			hashFunc.Hash(verificator, 0, hashSize);
-			verificator = hashFunc.Done();
+			hashFunc.Done(verificator, 0);
 		}
 		
 		return verificator;
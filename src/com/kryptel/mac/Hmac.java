@@ -30,9 +30,11 @@ import static com.kryptel.Guids.CID_HMAC;
 import static com.kryptel.Guids.IID_IComponentState;
 import static com.kryptel.Guids.IID_IHashFunction;
 import static com.kryptel.Guids.IID_IHashFunctionParams;
+import static com.kryptel.Guids.IID_IHashMidstate;
 import static com.kryptel.Guids.IID_IKryptelComponent;
 import static com.kryptel.Guids.IID_IMacSetup;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.UUID;
 
@@ -41,6 +43,7 @@ import com.kryptel.IKryptelComponent;
 import com.kryptel.Message;
 import com.kryptel.hash_function.IHashFunction;
 import com.kryptel.hash_function.IHashFunctionParams;
+import com.kryptel.hash_function.IHashMidstate;
 
 
 final class Hmac extends MacBase {
@@ -94,7 +97,10 @@ final class Hmac extends MacBase {
 			assert (opad != null);
 			Arrays.fill(ipad, (byte)0);
 			Arrays.fill(opad, (byte)0);
+			padsReady = false;
 		}
+		if (innerHash != null) Arrays.fill(innerHash, (byte)0);
+		DiscardMidstates();
 		super.close();
 	}
 
@@ -115,6 +121,7 @@ final class Hmac extends MacBase {
 	
 	public void SetKey(byte[] key, int start, int size) throws Exception {
 		super.SetKey(key, start, size);
+		padsReady = false;
 	}
 
 	
@@ -124,11 +131,14 @@ final class Hmac extends MacBase {
 
 	public void Init() throws Exception {
 		super.Init();
-		InitHmac();
+		if (!padsReady) InitHmac();
 	
-		hashFunc = (IHashFunction)baseComp.GetInterface(IID_IHashFunction);
-		hashFunc.Init();
-		hashFunc.Hash(ipad, 0, ipad.length);
+		if (innerMidstate != null)
+			hashMidstate.RestoreMidstate(innerMidstate);
+		else {
+			hashFunc.Init();
+			hashFunc.Hash(ipad, 0, ipad.length);
+		}
 	}
 	
 	public void Hash(byte[] src, int start, int len) throws Exception {
@@ -136,17 +146,20 @@ final class Hmac extends MacBase {
 		if (len > 0) hashFunc.Hash(src, start, len);
 	}
 	
-	public byte[] Done() throws Exception {
+	public void Hash(ByteBuffer src) throws Exception {
 		if (currentState != State.Hashing) throw new Exception(Message.Get(Message.Code.InvalidState));
-		byte[] textHash = hashFunc.Done();
-		
-		currentState = State.Idle;
-		
-		hashFunc.Init();
-		hashFunc.Hash(opad, 0, opad.length);
-		hashFunc.Hash(textHash, 0, textHash.length);
+		if (src.hasRemaining()) hashFunc.Hash(src);
+	}
+	
+	public byte[] Done() throws Exception {
+		DoneInner();
 		return hashFunc.Done();
 	}
+	
+	public void Done(byte[] dst, int start) throws Exception {
+		DoneInner();
+		hashFunc.Done(dst, start);
+	}
 
 	
   //
@@ -157,17 +170,49 @@ final class Hmac extends MacBase {
 	
 	private byte[] ipad = null;
 	private byte[] opad = null;
+	private boolean padsReady = false;		// ipad and opad match the current key and base
+	private byte[] innerHash;		// Allocated on first use, the base's hash size may differ from its digest length
 	
 	IHashFunctionParams hashFuncParams;
 	IHashFunction hashFunc;
+	IHashMidstate hashMidstate;		// null if the base can't save its state
+	
+	// Base states after hashing ipad and opad, so that each MAC costs only the message blocks
+	private Object innerMidstate;
+	private Object outerMidstate;
 	
 	
 	private void CheckBase() throws Exception {
+		DiscardMidstates();
 		if ((baseComp.ComponentType() & TYPE_HASH_FUNCTION) == 0) {
 			baseComp = null;
 			throw new Exception(Message.Get(Message.Code.InvalidMacBase));
 		}
 		hashFuncParams = (IHashFunctionParams)baseComp.GetInterface(IID_IHashFunctionParams);
+		hashFunc = (IHashFunction)baseComp.GetInterface(IID_IHashFunction);
+		hashMidstate = (IHashMidstate)baseComp.GetInterface(IID_IHashMidstate);
+		padsReady = false;
+		innerHash = null;
+	}
+	
+	
+	// Completes the inner hash and starts the outer one
+	private void DoneInner() throws Exception {
+		if (currentState != State.Hashing) throw new Exception(Message.Get(Message.Code.InvalidState));
+		if (innerHash == null)
+			innerHash = hashFunc.Done();
+		else
+			hashFunc.Done(innerHash, 0);
+		
+		currentState = State.Idle;
+		
+		if (outerMidstate != null)
+			hashMidstate.RestoreMidstate(outerMidstate);
+		else {
+			hashFunc.Init();
+			hashFunc.Hash(opad, 0, opad.length);
+		}
+		hashFunc.Hash(innerHash, 0, innerHash.length);
 	}
 	
 	
@@ -198,5 +243,30 @@ final class Hmac extends MacBase {
 			ipad[i] ^= macKey[i];
 			opad[i] ^= macKey[i];
 		}
+		
+		DiscardMidstates();
+		if (hashMidstate != null) {
+			innerMidstate = SavePadMidstate(ipad);
+			outerMidstate = SavePadMidstate(opad);
+			if (innerMidstate == null || outerMidstate == null) DiscardMidstates();
+		}
+		padsReady = true;
+	}
+	
+	
+	private Object SavePadMidstate(byte[] pad) throws Exception {
+		hashFunc.Init();
+		hashFunc.Hash(pad, 0, pad.length);
+		return hashMidstate.SaveMidstate();
+	}
+	
+	
+	private void DiscardMidstates() throws Exception {
+		if (hashMidstate != null) {
+			hashMidstate.DiscardMidstate(innerMidstate);
+			hashMidstate.DiscardMidstate(outerMidstate);
+		}
+		innerMidstate = null;
+		outerMidstate = null;
 	}
 }
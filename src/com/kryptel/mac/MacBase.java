@@ -159,6 +159,20 @@ abstract class MacBase implements IKryptelComponent,
     return mac.Done();
 	}
 	
+	public byte[][] HashBlocks(final byte[] src, int[] starts, int[] lengths) throws Exception {
+		if (currentState != State.Idle) throw new Exception(Message.Get(Message.Code.InvalidState));
+		if (starts.length != lengths.length) throw new Exception(Message.Get(Message.Code.InvalidArg));
+		IHashFunction mac = (IHashFunction)GetInterface(IID_IHashFunction);
+		
+		byte[][] macs = new byte [starts.length][];
+		for (int i = 0; i < starts.length; i++) {
+			mac.Init();
+			if (lengths[i] > 0) mac.Hash(src, starts[i], lengths[i]);
+			macs[i] = mac.Done();
+		}
+		return macs;
+	}
+	
 	public byte[] HashUtf8String(String str) throws Exception {
 		byte[] byteSeq = str.getBytes("UTF8");
 		return HashBlock(byteSeq, 0, byteSeq.length);
@@ -0,0 +1,103 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          HmacDrbg.java
+  Description:   HMAC_DRBG (NIST SP 800-90A) with SHA-256
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.rng;
+
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+//
+// HMAC_DRBG as specified in NIST SP 800-90A, section 10.1.2, using HMAC-SHA-256.
+// An instance is not thread-safe; PseudoRandom keeps one per thread.
+//
+
+final class HmacDrbg {
+	HmacDrbg(byte[] entropy, byte[] nonce) throws GeneralSecurityException {
+		hmac = Mac.getInstance(HMAC_ALGORITHM);
+		Arrays.fill(K, (byte)0x00);
+		Arrays.fill(V, (byte)0x01);
+		Update(entropy, nonce);
+		reseedCounter = 1;
+	}
+
+	boolean NeedsReseed() { return reseedCounter > RESEED_INTERVAL; }
+
+	void Reseed(byte[] entropy, byte[] additional) throws GeneralSecurityException {
+		Update(entropy, additional);
+		reseedCounter = 1;
+	}
+
+	void Generate(byte[] dst, int start, int size) throws GeneralSecurityException {
+		while (size > 0) {
+			int len = Math.min(size, MAX_REQUEST_SIZE);
+			for (int n = 0; n < len; n += OUTLEN) {
+				hmac.update(V);
+				hmac.doFinal(V, 0);
+				System.arraycopy(V, 0, dst, start + n, Math.min(OUTLEN, len - n));
+			}
+			Update(null, null);
+			reseedCounter++;
+			start += len;
+			size -= len;
+		}
+	}
+
+
+  //
+  // Private data and methods
+  //
+
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int OUTLEN = 32;
+  private static final int MAX_REQUEST_SIZE = 1 << 16;				// The standard's limit is 2^19 bits per request
+  private static final long RESEED_INTERVAL = 1L << 24;				// Requests between reseeds; the standard allows up to 2^48
+
+  private final Mac hmac;
+  private final byte[] K = new byte [OUTLEN];
+  private final byte[] V = new byte [OUTLEN];
+  private long reseedCounter;
+
+  // HMAC_DRBG_Update; provided data is the concatenation of data1 and data2, either may be null
+  private void Update(byte[] data1, byte[] data2) throws GeneralSecurityException {
+  	boolean provided = (data1 != null && data1.length > 0) || (data2 != null && data2.length > 0);
+  	UpdateRound((byte)0x00, data1, data2);
+  	if (provided) UpdateRound((byte)0x01, data1, data2);
+  }
+
+  private void UpdateRound(byte sep, byte[] data1, byte[] data2) throws GeneralSecurityException {
+  	hmac.init(new SecretKeySpec(K, HMAC_ALGORITHM));
+  	hmac.update(V);
+  	hmac.update(sep);
+  	if (data1 != null) hmac.update(data1);
+  	if (data2 != null) hmac.update(data2);
+  	hmac.doFinal(K, 0);
+  	hmac.init(new SecretKeySpec(K, HMAC_ALGORITHM));
+  	hmac.update(V);
+  	hmac.doFinal(V, 0);
+  }
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          IPseudoRandom.java
+  Description:   Shared pseudo-random generator interface
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.rng;
+
+
+import java.security.SecureRandom;
+
+
+public interface IPseudoRandom {
+	void Generate(byte[] dst, int start, int size) throws Exception;
+	byte[] Generate(int size) throws Exception;
+
+	// A SecureRandom view of the same generator; it may be shared between threads
+	SecureRandom GetSecureRandom();
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          PseudoRandom.java
+  Description:   SecureRandom backed by per-thread HMAC_DRBG instances
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.rng;
+
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+
+
+//
+// Process-wide pseudo-random generator for stream headers, padding, init vectors, and object IDs.
+// Each thread gets its own HmacDrbg, instantiated from the platform SecureRandom on first use,
+// so requests neither block on the system entropy pool nor contend for a lock.
+// Key material is still generated with a dedicated SecureRandom.
+//
+
+public final class PseudoRandom extends SecureRandom {
+	public static PseudoRandom GetInstance() { return instance; }
+
+	public void Generate(byte[] dst, int start, int size) {
+		try {
+			generators.get().Generate(dst, start, size);
+		}
+		catch (GeneralSecurityException e) {
+			throw new ProviderException(e);
+		}
+	}
+
+
+	//
+	// SecureRandom
+	//
+	// Overridden to bypass the synchronization SecureRandom applies to providerless instances.
+	// nextInt, nextLong, nextDouble, etc. end up in nextBytes.
+	//
+
+	@Override
+	public String getAlgorithm() { return "HMAC_DRBG"; }
+
+	@Override
+	public void nextBytes(byte[] bytes) { Generate(bytes, 0, bytes.length); }
+
+	@Override
+	public void setSeed(byte[] seed) {
+		try {
+			generators.get().Reseed(seed);
+		}
+		catch (GeneralSecurityException e) {
+			throw new ProviderException(e);
+		}
+	}
+
+	// Seed bytes come from the platform SecureRandom, as SecureRandom.generateSeed promises
+	@Override
+	public byte[] generateSeed(int numBytes) { return seedSource.generateSeed(numBytes); }
+
+
+  //
+  // Private data and methods
+  //
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int ENTROPY_SIZE = 48;				// Security strength 256 bits plus half of it for the nonce
+  private static final int POOL_SIZE = 1024;
+  private static final int MAX_POOLED_REQUEST = 64;		// Typical requests are IVs, headers, and IDs
+
+  private static final PseudoRandom instance = new PseudoRandom();
+  private static final SecureRandom seedSource = new SecureRandom();
+
+  private static final ThreadLocal<ThreadGenerator> generators = new ThreadLocal<ThreadGenerator>() {
+  	@Override
+  	protected ThreadGenerator initialValue() {
+  		try {
+  			return new ThreadGenerator();
+  		}
+  		catch (GeneralSecurityException e) {
+  			throw new ProviderException(e);
+  		}
+  	}
+  };
+
+  private PseudoRandom() {
+  	super(new Spi(), null);
+  }
+
+  private static byte[] Entropy() {
+  	byte[] entropy = new byte [ENTROPY_SIZE];
+  	seedSource.nextBytes(entropy);		// Self-seeded once; does not block after that
+  	return entropy;
+  }
+
+  // A DRBG request costs several HMAC key setups, so small requests are served from a block of output
+  // generated in advance. Served bytes are wiped from the pool.
+  private static final class ThreadGenerator {
+  	ThreadGenerator() throws GeneralSecurityException {
+  		ByteBuffer nonce = ByteBuffer.allocate(16);
+  		nonce.putLong(Thread.currentThread().getId()).putLong(System.nanoTime());
+  		drbg = new HmacDrbg(Entropy(), nonce.array());
+  	}
+
+  	void Generate(byte[] dst, int start, int size) throws GeneralSecurityException {
+  		if (size > MAX_POOLED_REQUEST) {
+  			if (drbg.NeedsReseed()) drbg.Reseed(Entropy(), null);
+  			drbg.Generate(dst, start, size);
+  			return;
+  		}
+  		if (size > POOL_SIZE - poolPtr) {
+  			if (drbg.NeedsReseed()) drbg.Reseed(Entropy(), null);
+  			drbg.Generate(pool, 0, POOL_SIZE);
+  			poolPtr = 0;
+  		}
+  		System.arraycopy(pool, poolPtr, dst, start, size);
+  		Arrays.fill(pool, poolPtr, poolPtr + size, (byte)0);
+  		poolPtr += size;
+  	}
+
+  	void Reseed(byte[] additional) throws GeneralSecurityException {
+  		drbg.Reseed(Entropy(), additional);
+  		Arrays.fill(pool, (byte)0);
+  		poolPtr = POOL_SIZE;
+  	}
+
+  	private final HmacDrbg drbg;
+  	private final byte[] pool = new byte [POOL_SIZE];
+  	private int poolPtr = POOL_SIZE;
+  }
+
+  // Backs the SecureRandom methods that are not overridden above. The library builds on Java 8, so the
+  // SecureRandomParameters variants of nextBytes and reseed (Java 9) are not supported; use setSeed to reseed.
+  private static final class Spi extends SecureRandomSpi {
+  	private static final long serialVersionUID = 1L;
+
+  	protected void engineSetSeed(byte[] seed) { instance.setSeed(seed); }
+  	protected void engineNextBytes(byte[] bytes) { instance.nextBytes(bytes); }
+  	protected byte[] engineGenerateSeed(int numBytes) { return instance.generateSeed(numBytes); }
+  }
+}
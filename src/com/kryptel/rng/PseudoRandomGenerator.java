@@ -0,0 +1,92 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          PseudoRandomGenerator.java
+  Description:   Pseudo-random generator component
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.rng;
+
+
+import static com.kryptel.Constants.TYPE_PSEUDO_RNG;
+import static com.kryptel.Guids.CID_PSEUDO_RNG;
+import static com.kryptel.Guids.IID_IKryptelComponent;
+import static com.kryptel.Guids.IID_IPseudoRandom;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+import com.kryptel.IKryptelComponent;
+
+
+//
+// All instances share PseudoRandom, so creating the component is cheap and never waits for entropy.
+//
+
+final class PseudoRandomGenerator implements IKryptelComponent, IPseudoRandom {
+	PseudoRandomGenerator(long capabilities) { }
+
+
+	//
+	// IKryptelComponent
+	//
+
+	public long ComponentType() { return componentType; }
+	public UUID ComponentID() { return componentID; }
+	public String ComponentName() { return "HMAC-DRBG Pseudo-Random Generator"; }
+
+	public Object GetInterface(UUID iid) {
+		if (iid.equals(IID_IKryptelComponent) || iid.equals(IID_IPseudoRandom)) return this;
+		return null;
+	}
+
+	public void DiscardComponent() { }
+
+
+	//
+	// AutoCloseable
+	//
+
+	public void close() { }
+
+
+	//
+	// IPseudoRandom
+	//
+
+	public void Generate(byte[] dst, int start, int size) throws Exception {
+		PseudoRandom.GetInstance().Generate(dst, start, size);
+	}
+
+	public byte[] Generate(int size) throws Exception {
+		byte[] res = new byte [size];
+		PseudoRandom.GetInstance().Generate(res, 0, size);
+		return res;
+	}
+
+	public SecureRandom GetSecureRandom() { return PseudoRandom.GetInstance(); }
+
+
+  //
+  // Private data and methods
+  //
+
+  static long componentType = TYPE_PSEUDO_RNG;
+  static final UUID componentID = CID_PSEUDO_RNG;
+}
@@ -130,7 +130,7 @@ final class Extractor4 implements ISilverKeyExtractor {
 		
 		try {
 			if (!IsParcel(parcelFile, locator)) throw new Exception(Message.Get(Message.Code.InvalidParcel));
-			if (!VerifyParcelMD5(parcelFile, locator, arg, progressFunc, Message.Code.ParcelIntegrity)) throw new Exception(Message.Get(Message.Code.CorruptedParcel));
+			if (verificationMode == VERIFICATION_MODE.VERIFY_BEFORE_EXTRACTION && !VerifyParcelMD5(parcelFile, locator, arg, progressFunc, Message.Code.ParcelIntegrity)) throw new Exception(Message.Get(Message.Code.CorruptedParcel));
 			if (!locator.guidEngine.equals(CID_SILVER_KEY_4)) throw new Exception(Message.Get(Message.Code.WrongExtractor));
 			if (locator.versionRequired > Engine4.ENGINE_VERSION) throw new Exception(Message.Get(Message.Code.OldVersion));
 			if (locator.versionCreated < Engine4.MINIMAL_COMPATIBLE_ENGINE_VERSION) throw new Exception(Message.Get(Message.Code.IncompatibleVersion));
@@ -175,15 +175,22 @@ final class Extractor4 implements ISilverKeyExtractor {
 				if (notificationCallback != null) notificationCallback.DismissNotification();
 			}
 			
-			byte[] computedHmac = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart, fileAreaStart,
-					hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
-			if (!Arrays.equals(computedHmac, headerHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
-			computedHmac = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart + fileAreaStart, scriptAreaStart - fileAreaStart,
-					hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
-			if (!Arrays.equals(computedHmac, fileAreaHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
-			computedHmac = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart + scriptAreaStart, trailerStart - scriptAreaStart,
-					hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
-			if (!Arrays.equals(computedHmac, scriptAreaHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
+			// HMACs are checked now (the MD5 has been checked before asking for the key), or while extracting together with the MD5
+			
+			if (verificationMode == VERIFICATION_MODE.VERIFY_DURING_EXTRACTION) {
+				byte[] computedHmac = ApiHelpers.ComputeMappedAreaHash(parcelFile, locator.parcelStart + scriptAreaStart, trailerStart - scriptAreaStart,
+						hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
+				if (!Arrays.equals(computedHmac, scriptAreaHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
+			}
+			
+			verifier = new ParcelVerifier(parcelFile, locator, verificationMode == VERIFICATION_MODE.VERIFY_DURING_EXTRACTION, hmacFunc, fileAreaStart, scriptAreaStart, trailerStart, headerHmac, fileAreaHmac, scriptAreaHmac);
+			if (verificationMode == VERIFICATION_MODE.VERIFY_DURING_EXTRACTION) {
+				verifier.SkipScriptAreaHmac();		// Checked above
+				verifier.Advance(fileAreaStart);
+				verifier.CheckCompletedAreas();
+			}
+			else
+				verifier.Verify(arg, progressFunc);
 
 			rawBlockCipher.EncryptBlock(initVector, 0, initVector, 0);
 			
@@ -222,12 +229,12 @@ final class Extractor4 implements ISilverKeyExtractor {
 
 							streamCipher.Init(new SmallDataDecryptionSink(), commentBuffer);
 							
-							parcelFile.seek(commentPos);
+							verifier.Seek(commentPos);
 							int len;
 							
 							while (commentSize > 0) {
 								len = (int)Math.min(commentSize, ioBuf.length);
-								parcelFile.read(ioBuf, 0, len);
+								verifier.Read(ioBuf, 0, len);
 								streamCipher.Decrypt(ioBuf, 0, len);
 								commentSize -= len;
 							}
@@ -319,12 +326,12 @@ final class Extractor4 implements ISilverKeyExtractor {
 							
 							streamCipher.Init(new FileDecryptionSink(), new FileOutputStream(path));
 							
-							parcelFile.seek(streamPos);
+							verifier.Seek(streamPos);
 							int len;
 							
 							while (streamSize > 0) {
 								len = (int)Math.min(streamSize, ioBuf.length);
-								parcelFile.read(ioBuf, 0, len);
+								verifier.Read(ioBuf, 0, len);
 								streamCipher.Decrypt(ioBuf, 0, len);
 								streamSize -= len;
 								
@@ -357,14 +364,24 @@ final class Extractor4 implements ISilverKeyExtractor {
 			}
 			
 			if (progress != null) progress.Discard();
+			
+			verifier.Finish();
 		}
 		finally {
+			verifier = null;
 			parcelFile.close();
 			parcelFile = null;
 		}
 	}
 	
 	
+	public VERIFICATION_MODE SetVerificationMode(VERIFICATION_MODE mode) {
+		VERIFICATION_MODE prevMode = verificationMode;
+		verificationMode = mode;
+		return prevMode;
+	}
+	
+	
 	public ParcelStatistics GetExtractionStatistics() {
 		ParcelStatistics ps = new ParcelStatistics();
 		ps.nDirs = nDirs;
@@ -387,6 +404,8 @@ final class Extractor4 implements ISilverKeyExtractor {
 	
 	private RandomAccessFile parcelFile;
 	private ParcelLocator locator = new ParcelLocator();
+	private ParcelVerifier verifier;
+	private VERIFICATION_MODE verificationMode = DEFAULT_VERIFICATION_MODE;
 
 	private KeyRecord keyRecord;
 	
@@ -487,18 +506,18 @@ final class Extractor4 implements ISilverKeyExtractor {
 	
 	
 	private byte[] ComputeVerificator(int nCounts) throws Exception {
-		byte[] keyVerificator = new byte [hmacParams.GetHashSize()];
-
-		int[] verArray = new int [nCounts];
+		byte[] keyVerificator = new byte [hmacParams.GetHashSize()];		// The first round hashes zeros of the reported size
 		byte[] verBytes = new byte [nCounts * 4];
 		
 		for (int i = 0; i < nCounts; i++) {
-			verArray[i] = i;
-			Conversions.ToBytes(verBytes, 0, verArray, 0, (i + 1) * 4);
+			Conversions.IntAsBytes(i, verBytes, i * 4);		// verBytes holds integers 0..i
 			hmacFunc.Init();
 			hmacFunc.Hash(verBytes, 0, (i + 1) * 4);
 			hmacFunc.Hash(keyVerificator, 0, keyVerificator.length);
-			keyVerificator = hmacFunc.Done();
+			if (i == 0)
+				keyVerificator = hmacFunc.Done();		// The digest may be shorter than the reported size (MD5 reports 20), reuse its own buffer afterwards
+			else
+				hmacFunc.Done(keyVerificator, 0);
 		}
 		return keyVerificator;
 	}
@@ -137,7 +137,7 @@ final class Extractor5 implements ISilverKeyExtractor {
 		
 		try {
 			if (!IsParcel(parcelFile, locator)) throw new Exception(Message.Get(Message.Code.InvalidParcel));
-			if (!VerifyParcelMD5(parcelFile, locator, arg, progressFunc, Message.Code.ParcelIntegrity)) throw new Exception(Message.Get(Message.Code.CorruptedParcel));
+			if (verificationMode == VERIFICATION_MODE.VERIFY_BEFORE_EXTRACTION && !VerifyParcelMD5(parcelFile, locator, arg, progressFunc, Message.Code.ParcelIntegrity)) throw new Exception(Message.Get(Message.Code.CorruptedParcel));
 			if (!locator.guidEngine.equals(CID_SILVER_KEY_5)) throw new Exception(Message.Get(Message.Code.WrongExtractor));
 			if (locator.versionRequired > Engine5.ENGINE_VERSION) throw new Exception(Message.Get(Message.Code.OldVersion));
 			if (locator.versionCreated < Engine5.MINIMAL_COMPATIBLE_ENGINE_VERSION) throw new Exception(Message.Get(Message.Code.IncompatibleVersion));
@@ -184,15 +184,22 @@ final class Extractor5 implements ISilverKeyExtractor {
 			
 			if ((keyData.flags & PASSWORD_CAN_DECRYPT) == 0) throw new Exception(Message.Get(Message.Code.InsufficientKeyRights));
 			
-			byte[] computedHmac = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart, fileAreaStart,
-					hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
-			if (!Arrays.equals(computedHmac, headerHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
-			computedHmac = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart + fileAreaStart, scriptAreaStart - fileAreaStart,
-					hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
-			if (!Arrays.equals(computedHmac, fileAreaHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
-			computedHmac = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart + scriptAreaStart, trailerStart - scriptAreaStart,
-					hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
-			if (!Arrays.equals(computedHmac, scriptAreaHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
+			// HMACs are checked now (the MD5 has been checked before asking for the key), or while extracting together with the MD5
+			
+			if (verificationMode == VERIFICATION_MODE.VERIFY_DURING_EXTRACTION) {
+				byte[] computedHmac = ApiHelpers.ComputeMappedAreaHash(parcelFile, locator.parcelStart + scriptAreaStart, trailerStart - scriptAreaStart,
+						hmacFunc, arg, progressFunc, Message.Code.DetectTampering);
+				if (!Arrays.equals(computedHmac, scriptAreaHmac)) throw new Exception(Message.Get(Message.Code.TamperedPacel));
+			}
+			
+			verifier = new ParcelVerifier(parcelFile, locator, verificationMode == VERIFICATION_MODE.VERIFY_DURING_EXTRACTION, hmacFunc, fileAreaStart, scriptAreaStart, trailerStart, headerHmac, fileAreaHmac, scriptAreaHmac);
+			if (verificationMode == VERIFICATION_MODE.VERIFY_DURING_EXTRACTION) {
+				verifier.SkipScriptAreaHmac();		// Checked above
+				verifier.Advance(fileAreaStart);
+				verifier.CheckCompletedAreas();
+			}
+			else
+				verifier.Verify(arg, progressFunc);
 			
 			ReadScriptArea();
 
@@ -229,12 +236,12 @@ final class Extractor5 implements ISilverKeyExtractor {
 
 							streamCipher.Init(new SmallDataDecryptionSink(), commentBuffer);
 							
-							parcelFile.seek(commentPos);
+							verifier.Seek(commentPos);
 							int len;
 							
 							while (commentSize > 0) {
 								len = (int)Math.min(commentSize, ioBuf.length);
-								parcelFile.read(ioBuf, 0, len);
+								verifier.Read(ioBuf, 0, len);
 								streamCipher.Decrypt(ioBuf, 0, len);
 								commentSize -= len;
 							}
@@ -326,12 +333,12 @@ final class Extractor5 implements ISilverKeyExtractor {
 							
 							streamCipher.Init(new FileDecryptionSink(), new FileOutputStream(path));
 							
-							parcelFile.seek(streamPos);
+							verifier.Seek(streamPos);
 							int len;
 							
 							while (streamSize > 0) {
 								len = (int)Math.min(streamSize, ioBuf.length);
-								parcelFile.read(ioBuf, 0, len);
+								verifier.Read(ioBuf, 0, len);
 								streamCipher.Decrypt(ioBuf, 0, len);
 								streamSize -= len;
 								
@@ -364,14 +371,24 @@ final class Extractor5 implements ISilverKeyExtractor {
 			}
 			
 			if (progress != null) progress.Discard();
+			
+			verifier.Finish();
 		}
 		finally {
+			verifier = null;
 			parcelFile.close();
 			parcelFile = null;
 		}
 	}
 	
 	
+	public VERIFICATION_MODE SetVerificationMode(VERIFICATION_MODE mode) {
+		VERIFICATION_MODE prevMode = verificationMode;
+		verificationMode = mode;
+		return prevMode;
+	}
+	
+	
 	public ParcelStatistics GetExtractionStatistics() {
 		ParcelStatistics ps = new ParcelStatistics();
 		ps.nDirs = nDirs;
@@ -394,6 +411,8 @@ final class Extractor5 implements ISilverKeyExtractor {
 	
 	private RandomAccessFile parcelFile;
 	private ParcelLocator locator = new ParcelLocator();
+	private ParcelVerifier verifier;
+	private VERIFICATION_MODE verificationMode = DEFAULT_VERIFICATION_MODE;
 	
 	private byte[] ioBuf = new byte [DEFAULT_BUFFER_SIZE];
 	private SmartBuffer scriptBuffer = new SmartBuffer();
@@ -27,10 +27,26 @@ package com.kryptel.silver_key;
 import com.kryptel.INotification;
 import com.kryptel.IProgressCallback;
 import com.kryptel.IReplaceCallback;
+import com.kryptel.Message;
 import com.kryptel.key.IKeyCallback;
 
 
 public interface ISilverKeyExtractor {
+	//
+	// VERIFY_BEFORE_EXTRACTION checks the parcel MD5 before asking for the key, so a corrupted parcel is reported
+	// without a password prompt, then checks the HMACs in a second pass, and then extracts the parcel.
+	// VERIFY_DURING_EXTRACTION checks the header and the script up front, and the file area while extracting it,
+	// so the file area, which is the bulk of the parcel, is read once. The script area is read twice: its HMAC is checked
+	// before anything is extracted, and it is read again at the end for the parcel MD5. If the file area turns out
+	// to be damaged, ExtractData throws after the files have been written. As the MD5 is computed in the same pass,
+	// a corrupted parcel is reported after the key has been asked for.
+	//
+	// Extractors that do not override SetVerificationMode support only DEFAULT_VERIFICATION_MODE.
+	//
+	enum VERIFICATION_MODE { VERIFY_BEFORE_EXTRACTION, VERIFY_DURING_EXTRACTION };
+	
+	static final VERIFICATION_MODE DEFAULT_VERIFICATION_MODE = VERIFICATION_MODE.VERIFY_BEFORE_EXTRACTION;
+	
 	interface IMessage {
 		boolean Show(String parcelTitle, String message);		// Returns false if user requested abort
 	}
@@ -52,4 +68,9 @@ public interface ISilverKeyExtractor {
 									INotification notificationCallback) throws Exception;
 	
 	ParcelStatistics GetExtractionStatistics() throws Exception;
+	
+	default VERIFICATION_MODE SetVerificationMode(VERIFICATION_MODE mode) throws Exception {		// Returns the previous mode
+		if (mode != DEFAULT_VERIFICATION_MODE) throw new Exception(Message.Get(Message.Code.UnsupportedCap));
+		return DEFAULT_VERIFICATION_MODE;
+	}
 }
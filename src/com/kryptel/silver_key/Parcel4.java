@@ -51,6 +51,7 @@ import com.kryptel.key.IKeyCallback;
 import com.kryptel.key.KeyIdent;
 import com.kryptel.key.KeyRecord;
 import com.kryptel.mac.IMacSetup;
+import com.kryptel.rng.PseudoRandom;
 
 
 final class Parcel4 implements ISilverKeyParcel {
@@ -59,8 +60,7 @@ final class Parcel4 implements ISilverKeyParcel {
 		
 		parcelMD5 = MessageDigest.getInstance("MD5");
 
-		rand = new SecureRandom();
-		rand.setSeed(rand.generateSeed(256 / 8));
+		rand = PseudoRandom.GetInstance();
 
 		hmacComp = Loader.CreateComponent(CID_HMAC, compCapabilities);
 		hmacSetup = (IMacSetup)hmacComp.GetInterface(IID_IMacSetup);
@@ -311,21 +311,27 @@ final class Parcel4 implements ISilverKeyParcel {
 				rand.nextBytes(elemInitVector);
 				cipherParams.SetInitVector(elemInitVector, 0, elemInitVector.length);
 				
-				compressorParams.SetLevel(GetCompressionLevel(fileName));
+				// The first buffer is read ahead to probe its compressibility
+				long fsize = originalSize;
+				int len = (int)Math.min(fsize, ioBuffer.length);
+				fin.read(ioBuffer, 0, len);
+				
+				compressorParams.SetLevel(GetCompressionLevel(fileName, ioBuffer, len));
 				CompressSink sink = new CompressSink();
 				streamCompressor.Init(sink, null);
 				
 				if (progress != null && !progress.NewFile(f.getName(), originalSize)) throw new UserAbortException();
 				
-				long fsize = originalSize;
-				int len;
-				while (fsize > 0) {
-					len = (int)Math.min(fsize, ioBuffer.length);
-					fin.read(ioBuffer, 0, len);
+				while (fsize > 0) {		// Empty files never reach the compressor, their streams are not written at all
 					streamCompressor.Compress(ioBuffer, 0, len);
 					fsize -= len;
 					
 					if (progress != null && !progress.Step(len)) throw new UserAbortException();
+					
+					if (fsize > 0) {
+						len = (int)Math.min(fsize, ioBuffer.length);
+						fin.read(ioBuffer, 0, len);
+					}
 				}
 				
 				streamCompressor.Done();
@@ -333,13 +339,13 @@ final class Parcel4 implements ISilverKeyParcel {
 			}
 		}
 
-		private byte GetCompressionLevel(String fileName) {
+		private byte GetCompressionLevel(String fileName, byte[] sample, int sampleSize) {
 			for (String s: nonCompressible) {
 				int len = s.length();
 				int pos = fileName.length() - len;
 				if ((pos > 0) && fileName.substring(pos).equalsIgnoreCase(s)) return CT_NO_COMPRESSION;
 			}
-			return CT_MAX_COMPRESSION;
+			return CompressibilityProbe.ChooseLevel(sample, 0, sampleSize, CT_MAX_COMPRESSION);
 		}
 	}
 	
@@ -553,18 +559,18 @@ final class Parcel4 implements ISilverKeyParcel {
 	
 	
 	private byte[] ComputeVerificator(int nCounts) throws Exception {
-		byte[] keyVerificator = new byte [hmacParams.GetHashSize()];
-
-		int[] verArray = new int [nCounts];
+		byte[] keyVerificator = new byte [hmacParams.GetHashSize()];		// The first round hashes zeros of the reported size
 		byte[] verBytes = new byte [nCounts * 4];
 		
 		for (int i = 0; i < nCounts; i++) {
-			verArray[i] = i;
-			Conversions.ToBytes(verBytes, 0, verArray, 0, (i + 1) * 4);
+			Conversions.IntAsBytes(i, verBytes, i * 4);		// verBytes holds integers 0..i
 			hmacFunc.Init();
 			hmacFunc.Hash(verBytes, 0, (i + 1) * 4);
 			hmacFunc.Hash(keyVerificator, 0, keyVerificator.length);
-			keyVerificator = hmacFunc.Done();
+			if (i == 0)
+				keyVerificator = hmacFunc.Done();		// The digest may be shorter than the reported size (MD5 reports 20), reuse its own buffer afterwards
+			else
+				hmacFunc.Done(keyVerificator, 0);
 		}
 		return keyVerificator;
 	}
@@ -731,7 +737,7 @@ final class Parcel4 implements ISilverKeyParcel {
 
 	private class CompressSink implements IDataSink {
 		public void Init(Object arg) throws Exception { streamCipher.Init(new EncryptSink(), null); }
-		public void PutData(byte[] buf, int start, int size) throws Exception { streamCipher.Encrypt(buf, start, size); }
+		public void PutData(byte[] buf, int start, int size) throws Exception { streamCipher.EncryptInPlace(buf, start, size); }
 		public void Done() throws Exception { streamCipher.Done(); }
 	}
 	
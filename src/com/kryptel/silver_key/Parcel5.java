@@ -53,6 +53,7 @@ import com.kryptel.exceptions.UserAbortException;
 import com.kryptel.hash_function.*;
 import com.kryptel.key.IKeyCallback;
 import com.kryptel.mac.IMacSetup;
+import com.kryptel.rng.PseudoRandom;
 
 
 final class Parcel5 implements ISilverKeyParcel {
@@ -61,8 +62,7 @@ final class Parcel5 implements ISilverKeyParcel {
 		
 		parcelMD5 = MessageDigest.getInstance("MD5");
 
-		rand = new SecureRandom();
-		rand.setSeed(rand.generateSeed(256 / 8));
+		rand = PseudoRandom.GetInstance();
 
 		hashFunctionComp = Loader.CreateComponent(CID_HASH_SHA512, compCapabilities);
 		hashFunctionParams = (IHashFunctionParams)hashFunctionComp.GetInterface(IID_IHashFunctionParams);
@@ -324,21 +324,27 @@ final class Parcel5 implements ISilverKeyParcel {
 				rand.nextBytes(elemInitVector);
 				cipherParams.SetInitVector(elemInitVector, 0, elemInitVector.length);
 				
-				compressorParams.SetLevel(GetCompressionLevel(fileName));
+				// The first buffer is read ahead to probe its compressibility
+				long fsize = originalSize;
+				int len = (int)Math.min(fsize, ioBuffer.length);
+				fin.read(ioBuffer, 0, len);
+				
+				compressorParams.SetLevel(GetCompressionLevel(fileName, ioBuffer, len));
 				CompressSink sink = new CompressSink();
 				streamCompressor.Init(sink, null);
 				
 				if (progress != null && !progress.NewFile(f.getName(), originalSize)) throw new UserAbortException();
 				
-				long fsize = originalSize;
-				int len;
-				while (fsize > 0) {
-					len = (int)Math.min(fsize, ioBuffer.length);
-					fin.read(ioBuffer, 0, len);
+				while (fsize > 0) {		// Empty files never reach the compressor, their streams are not written at all
 					streamCompressor.Compress(ioBuffer, 0, len);
 					fsize -= len;
 					
 					if (progress != null && !progress.Step(len)) throw new UserAbortException();
+					
+					if (fsize > 0) {
+						len = (int)Math.min(fsize, ioBuffer.length);
+						fin.read(ioBuffer, 0, len);
+					}
 				}
 				
 				streamCompressor.Done();
@@ -346,13 +352,13 @@ final class Parcel5 implements ISilverKeyParcel {
 			}
 		}
 
-		private byte GetCompressionLevel(String fileName) {
+		private byte GetCompressionLevel(String fileName, byte[] sample, int sampleSize) {
 			for (String s: nonCompressible) {
 				int len = s.length();
 				int pos = fileName.length() - len;
 				if ((pos > 0) && fileName.substring(pos).equalsIgnoreCase(s)) return CT_NO_COMPRESSION;
 			}
-			return CT_MAX_COMPRESSION;
+			return CompressibilityProbe.ChooseLevel(sample, 0, sampleSize, CT_MAX_COMPRESSION);
 		}
 	}
 	
@@ -721,7 +727,7 @@ final class Parcel5 implements ISilverKeyParcel {
 
 	private class CompressSink implements IDataSink {
 		public void Init(Object arg) throws Exception { streamCipher.Init(new EncryptSink(), null); }
-		public void PutData(byte[] buf, int start, int size) throws Exception { streamCipher.Encrypt(buf, start, size); }
+		public void PutData(byte[] buf, int start, int size) throws Exception { streamCipher.EncryptInPlace(buf, start, size); }
 		public void Done() throws Exception { streamCipher.Done(); }
 	}
 	
@@ -0,0 +1,289 @@
+/*******************************************************************************
+
+  Product:       Kryptel/Java
+  File:          ParcelVerifier.java
+  Description:   https://www.kryptel.com/articles/developers/java/sk.php
+
+  Copyright (c) 2017 Inv Softworks LLC,    http://www.kryptel.com
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+
+*******************************************************************************/
+
+
+package com.kryptel.silver_key;
+
+
+import static com.kryptel.Capabilities.CAP_DEFAULT_CAPABILITIES;
+import static com.kryptel.Constants.DEFAULT_BUFFER_SIZE;
+import static com.kryptel.Constants.MAPPED_WINDOW_SIZE;
+import static com.kryptel.Constants.MIN_SIZE_TO_MAP;
+import static com.kryptel.Guids.CID_HASH_MD5;
+import static com.kryptel.Guids.IID_IHashFunction;
+import static com.kryptel.IProgressCallback.MIN_SIZE_TO_STEP;
+import static com.kryptel.IProgressCallback.NO_TOTAL_PROGRESS_BAR;
+import static com.kryptel.IProgressCallback.PROGRESS_STEPS;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.kryptel.ApiHelpers;
+import com.kryptel.IKryptelComponent;
+import com.kryptel.IProgressCallback;
+import com.kryptel.Message;
+import com.kryptel.exceptions.UserAbortException;
+import com.kryptel.hash_function.IHashFunction;
+
+
+//
+// Computes the header, file area, and script area HMACs in one sequential pass, and optionally the parcel MD5,
+// feeding both hashes from the same buffer. All offsets except Seek's are relative to the parcel start.
+// The MD5 needs no key, so extractors that verify before extraction check it with VerifyParcelMD5 before
+// asking for the key, and pass checkMd5 = false here.
+// Verify maps large parcels window by window instead of reading them into a heap buffer; each window
+// is released as soon as it has been hashed (see ApiHelpers.ReleaseMapping).
+//
+// The whole pass may be run up front with Verify. Alternatively the extractor reads stream data through
+// Seek/Read, and the data is hashed as it goes by; the gaps between streams are read when skipped over,
+// and Finish hashes the rest of the parcel.
+//
+
+final class ParcelVerifier {
+	ParcelVerifier(RandomAccessFile parcelFile, ParcelLocator locator, boolean checkMd5, IHashFunction hmacFunc,
+								 long fileAreaStart, long scriptAreaStart, long trailerStart,
+								 byte[] headerHmac, byte[] fileAreaHmac, byte[] scriptAreaHmac) throws Exception {
+		this.parcelFile = parcelFile;
+		this.locator = locator;
+		this.hmacFunc = hmacFunc;
+		areaEnds = new long [] { fileAreaStart, scriptAreaStart, trailerStart };
+		areaHmacs = new byte [][] { headerHmac, fileAreaHmac, scriptAreaHmac };
+		areaHash = new byte [headerHmac.length];
+		passEnd = checkMd5 ? locator.parcelSize : trailerStart;
+		
+		if (checkMd5) {
+			md5Comp = com.kryptel.hash_function.ComponentLoader.CreateComponent(CID_HASH_MD5, CAP_DEFAULT_CAPABILITIES);
+			md5 = (IHashFunction)md5Comp.GetInterface(IID_IHashFunction);
+			md5.Init();
+		}
+		hmacFunc.Init();
+	}
+	
+	
+	// Runs the whole pass and throws if the parcel is corrupted or tampered with
+	void Verify(Object arg, IProgressCallback progressFunc) throws Exception {
+		String progressMessage = Message.Get((md5 != null) ? Message.Code.ParcelIntegrity : Message.Code.DetectTampering);
+		long size = passEnd - hashPos;
+		long[] steps = new long [PROGRESS_STEPS + 1];
+		long curPos = 0;
+		int curStep = 0;
+		boolean bProgress = progressFunc != null && size >= MIN_SIZE_TO_STEP;
+		MappedByteBuffer window = null;
+		
+		try {
+			if (bProgress) {
+				for (int i = 1; i < PROGRESS_STEPS; i++) steps[i] = (size * i) / PROGRESS_STEPS;
+				steps[PROGRESS_STEPS] = size;
+				if (!progressFunc.Callback(arg, progressMessage, 0, NO_TOTAL_PROGRESS_BAR)) throw new UserAbortException();
+			}
+			
+			FileChannel channel = (size >= MIN_SIZE_TO_MAP && ApiHelpers.CanReleaseMappings()) ? parcelFile.getChannel() : null;
+			
+			parcelFile.seek(locator.parcelStart + hashPos);
+			while (hashPos < passEnd) {
+				int len = (int)Math.min(buf.length, passEnd - hashPos);
+				if (channel != null) {
+					if (window == null || !window.hasRemaining()) {
+						if (window != null) {
+							ApiHelpers.ReleaseMapping(window);
+							window = null;
+						}
+						try {
+							window = channel.map(FileChannel.MapMode.READ_ONLY, locator.parcelStart + hashPos, Math.min(passEnd - hashPos, MAPPED_WINDOW_SIZE));
+						}
+						catch (IOException | UnsupportedOperationException e) {
+							channel = null;		// Can't map, continue with the buffer
+							parcelFile.seek(locator.parcelStart + hashPos);
+							continue;
+						}
+					}
+					len = Math.min(len, window.remaining());
+					window.limit(window.position() + len);
+					HashData(window);
+					window.limit(window.capacity());
+				}
+				else {
+					parcelFile.readFully(buf, 0, len);
+					HashData(buf, 0, len);
+				}
+				
+				if (bProgress) {
+					curPos += len;
+					int prevStep = curStep;
+					for ( ; curStep < PROGRESS_STEPS && curPos >= steps[curStep + 1]; curStep++);
+					if (curStep != prevStep) {
+						if (!progressFunc.Callback(arg, progressMessage, curStep, NO_TOTAL_PROGRESS_BAR)) throw new UserAbortException();
+					}
+				}
+			}
+		}
+		finally {
+			if (window != null) ApiHelpers.ReleaseMapping(window);
+			if (bProgress) progressFunc.Callback(arg, progressMessage, PROGRESS_STEPS, NO_TOTAL_PROGRESS_BAR);	// Make sure progress bar is removed
+		}
+		
+		Finish();
+	}
+	
+	
+	// Hashes the parcel up to the given offset
+	void Advance(long end) throws Exception {
+		if (end <= hashPos) return;
+		parcelFile.seek(locator.parcelStart + hashPos);
+		while (hashPos < end) {
+			int len = (int)Math.min(buf.length, end - hashPos);
+			parcelFile.readFully(buf, 0, len);
+			HashData(buf, 0, len);
+		}
+	}
+	
+	
+	// The script area HMAC has been checked separately, the area is hashed for the parcel MD5 only.
+	// Must be called before the pass reaches the script area.
+	void SkipScriptAreaHmac() {
+		assert (hashPos <= areaEnds[1]);
+		areaEnds = Arrays.copyOf(areaEnds, 2);
+		areaHmacs = Arrays.copyOf(areaHmacs, 2);
+	}
+	
+	
+	// Throws if an area hashed so far does not match its HMAC
+	void CheckCompletedAreas() throws Exception {
+		if (tampered) throw new Exception(Message.Get(Message.Code.TamperedPacel));
+	}
+	
+	
+	// Completes the pass and throws if the parcel is corrupted or tampered with
+	void Finish() throws Exception {
+		if (!finished) {
+			Advance(passEnd);
+			assert (area == areaEnds.length);
+			
+			if (md5 != null) {
+				byte[] hashRead = new byte [16];
+				parcelFile.seek(locator.parcelStart + locator.parcelSize);
+				parcelFile.readFully(hashRead, 0, 16);
+				corrupted = !Arrays.equals(md5.Done(), hashRead);
+			}
+			finished = true;
+		}
+		
+		if (corrupted) throw new Exception(Message.Get(Message.Code.CorruptedParcel));
+		CheckCompletedAreas();
+	}
+	
+	
+	//
+	// Stream reading, replaces parcelFile.seek / parcelFile.read
+	//
+	
+	void Seek(long filePos) {
+		readPos = filePos - locator.parcelStart;
+	}
+	
+	void Read(byte[] dst, int start, int size) throws Exception {
+		if (readPos > hashPos && readPos <= passEnd) Advance(readPos);
+		parcelFile.seek(locator.parcelStart + readPos);
+		parcelFile.readFully(dst, start, size);
+		
+		if (readPos <= hashPos && hashPos < readPos + size) {
+			int skip = (int)(hashPos - readPos);
+			HashData(dst, start + skip, (int)Math.min(size - skip, passEnd - hashPos));
+		}
+		readPos += size;
+	}
+	
+	
+  //
+  // Private data and methods
+  //
+	
+	private RandomAccessFile parcelFile;
+	private ParcelLocator locator;
+	
+	private IKryptelComponent md5Comp;
+	private IHashFunction md5;							// null if the MD5 is checked separately
+	private IHashFunction hmacFunc;
+	
+	private long[] areaEnds;
+	private byte[][] areaHmacs;
+	private byte[] areaHash;
+	private int area = 0;						// Area being hashed; areaEnds.length after the script area
+	
+	private long passEnd;						// The trailer start, or the parcel end if the MD5 is computed too
+	private long hashPos = 0;				// Data before this offset has been hashed
+	private long readPos = 0;
+	private boolean tampered = false;
+	private boolean corrupted = false;
+	private boolean finished = false;
+	
+	private byte[] buf = new byte [DEFAULT_BUFFER_SIZE];
+	
+	
+	// Same as HashData(byte[]...), consumes the buffer's remaining bytes
+	private void HashData(ByteBuffer data) throws Exception {
+		int end = data.limit();
+		if (md5 != null) md5.Hash(data.duplicate());
+		
+		long pos = hashPos;
+		hashPos += data.remaining();
+		while (area < areaEnds.length) {
+			int len = (int)Math.min(end - data.position(), areaEnds[area] - pos);
+			data.limit(data.position() + len);
+			hmacFunc.Hash(data);
+			pos += len;
+			
+			if (pos < areaEnds[area]) break;
+			
+			hmacFunc.Done(areaHash, 0);
+			if (!Arrays.equals(areaHash, areaHmacs[area])) tampered = true;
+			if (++area < areaEnds.length) hmacFunc.Init();
+		}
+		data.limit(end);
+		data.position(end);
+	}
+	
+	
+	private void HashData(byte[] data, int start, int size) throws Exception {
+		if (md5 != null) md5.Hash(data, start, size);
+		hashPos += size;
+		
+		long pos = hashPos - size;
+		while (area < areaEnds.length) {
+			int len = (int)Math.min(size, areaEnds[area] - pos);
+			hmacFunc.Hash(data, start, len);
+			pos += len;
+			start += len;
+			size -= len;
+			
+			if (pos < areaEnds[area]) break;
+			
+			hmacFunc.Done(areaHash, 0);
+			if (!Arrays.equals(areaHash, areaHmacs[area])) tampered = true;
+			if (++area < areaEnds.length) hmacFunc.Init();
+		}
+	}
+}
@@ -190,7 +190,7 @@ public final class SilverKey {
 	
 	public static boolean VerifyParcelMD5(RandomAccessFile parcelFile, ParcelLocator locator, Object arg, IProgressCallback progressFunc, Message.Code progressMessageCode) throws Exception {
 		try (IKryptelComponent md5Comp = com.kryptel.hash_function.ComponentLoader.CreateComponent(CID_HASH_MD5, CAP_DEFAULT_CAPABILITIES);) {
-			byte[] computedhash = ApiHelpers.ComputeAreaHash(parcelFile, locator.parcelStart, locator.parcelSize,
+			byte[] computedhash = ApiHelpers.ComputeMappedAreaHash(parcelFile, locator.parcelStart, locator.parcelSize,
 					(IHashFunction)md5Comp.GetInterface(IID_IHashFunction), arg, progressFunc, progressMessageCode);
 
 			byte[] hashRead = new byte [16];
@@ -38,6 +38,7 @@ import com.kryptel.ICompressionLevelCallback;
 import com.kryptel.IReplaceCallback;
 import com.kryptel.Message;
 import com.kryptel.Progress;
+import com.kryptel.compressor.CompressibilityProbe;
 import com.kryptel.exceptions.UserAbortException;
 
 
@@ -295,14 +296,23 @@ class FileObject extends AgentObject implements IEncryptedFile {
 		
 		int len;
 		
-		try (IEncryptedStream stream = Create(compr);
-				 FileInputStream fin = new FileInputStream(f)) {
-			while (fSize > 0) {
-				len = (int)Math.min(fSize, agent.ioBuffer.length);
-				fin.read(agent.ioBuffer, 0, len);
-				stream.Write(agent.ioBuffer, 0, len);
-				if (progress != null) progress.Step(len);
-				fSize -= len;
+		try (FileInputStream fin = new FileInputStream(f)) {
+			// The first buffer is read ahead so that data that won't compress is stored as is
+			len = (int)Math.min(fSize, agent.ioBuffer.length);
+			fin.read(agent.ioBuffer, 0, len);
+			compr = CompressibilityProbe.ChooseLevel(agent.ioBuffer, 0, len, compr);
+			
+			try (IEncryptedStream stream = Create(compr)) {
+				while (fSize > 0) {
+					stream.Write(agent.ioBuffer, 0, len);
+					if (progress != null) progress.Step(len);
+					fSize -= len;
+					
+					if (fSize > 0) {
+						len = (int)Math.min(fSize, agent.ioBuffer.length);
+						fin.read(agent.ioBuffer, 0, len);
+					}
+				}
 			}
 		}
 		finally {
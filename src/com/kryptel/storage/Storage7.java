@@ -48,6 +48,7 @@ import com.kryptel.key.IKeyCallback;
 import com.kryptel.key.KeyIdent;
 import com.kryptel.key.KeyRecord;
 import com.kryptel.mac.IMacSetup;
+import com.kryptel.rng.PseudoRandom;
 
 
 final class Storage7 implements IKryptelComponent,
@@ -57,8 +58,7 @@ final class Storage7 implements IKryptelComponent,
 	Storage7(long capabilities) throws Exception {
 		compCapabilities = capabilities;
 
-		rand = new SecureRandom();
-		rand.setSeed(rand.generateSeed(256 / 8));
+		rand = PseudoRandom.GetInstance();
 	}
 	
 	
@@ -898,18 +898,18 @@ final class Storage7 implements IKryptelComponent,
 	
 	
 	private byte[] ComputeVerificator(int nCounts) throws Exception {
-		byte[] keyVerificator = new byte [hmacParams.GetHashSize()];
-
-		int[] verArray = new int [nCounts];
+		byte[] keyVerificator = new byte [hmacParams.GetHashSize()];		// The first round hashes zeros of the reported size
 		byte[] verBytes = new byte [nCounts * 4];
 		
 		for (int i = 0; i < nCounts; i++) {
-			verArray[i] = i;
-			Conversions.ToBytes(verBytes, 0, verArray, 0, (i + 1) * 4);
+			IntAsBytes(i, verBytes, i * 4);		// verBytes holds integers 0..i
 			hmacFunc.Init();
 			hmacFunc.Hash(verBytes, 0, (i + 1) * 4);
 			hmacFunc.Hash(keyVerificator, 0, keyVerificator.length);
-			keyVerificator = hmacFunc.Done();
+			if (i == 0)
+				keyVerificator = hmacFunc.Done();		// The digest may be shorter than the reported size (MD5 reports 20), reuse its own buffer afterwards
+			else
+				hmacFunc.Done(keyVerificator, 0);
 		}
 		return keyVerificator;
 	}
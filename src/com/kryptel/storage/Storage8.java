@@ -46,6 +46,7 @@ import com.kryptel.compressor.*;
 import com.kryptel.hash_function.*;
 import com.kryptel.key.IKeyCallback;
 import com.kryptel.mac.IMacSetup;
+import com.kryptel.rng.PseudoRandom;
 
 
 final class Storage8 implements	IKryptelComponent,
@@ -55,8 +56,7 @@ final class Storage8 implements	IKryptelComponent,
 	Storage8(long capabilities) throws Exception {
 		compCapabilities = capabilities;
 
-		rand = new SecureRandom();
-		rand.setSeed(rand.generateSeed(256 / 8));
+		rand = PseudoRandom.GetInstance();
 	}
 	
 	
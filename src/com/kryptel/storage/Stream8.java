@@ -79,7 +79,7 @@ class Stream8 implements IEncryptedStream {
 		while (bytesLeft > 0 && streamBuffer.Size() < size) {
 			len = (int)Math.min(bytesLeft, ioBuf.length);
 			streamFile.read(ioBuf, 0, len);
-			cipher.Decrypt(ioBuf, 0, len);
+			cipher.DecryptInPlace(ioBuf, 0, len);
 			bytesLeft -= len;
 		}
 		
@@ -97,7 +97,9 @@ class Stream8 implements IEncryptedStream {
 
 	public void Write(byte[] buf, int start, int size) throws Exception {
 		if (bRead) throw new Exception("Stream::Write : Can't write to a stream opened for reading.");
+		writeBuf = buf;
 		compressor.Compress(buf, start, size);
+		writeBuf = null;
 		streamMD5.update(buf, start, size);
 		parent.dataUncomprSize += size;
 		currentPosition += size;
@@ -241,6 +243,7 @@ class Stream8 implements IEncryptedStream {
 	ICipher cipher;
 	ICompressor compressor;
 	byte[] ioBuf;
+	byte[] writeBuf;		// The caller's buffer while Write is in progress
 	
 	
 	//
@@ -254,7 +257,11 @@ class Stream8 implements IEncryptedStream {
 		}
 
 		public void PutData(byte[] buf, int start, int size) throws Exception {
-			cipher.Encrypt(buf, start, size);
+			// A pass-through compressor forwards the caller's buffer, which must be left intact
+			if (buf != writeBuf)
+				cipher.EncryptInPlace(buf, start, size);
+			else
+				cipher.Encrypt(buf, start, size);
 		}
 
 		public void Done() throws Exception {